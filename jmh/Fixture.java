@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+
+/**
+ * Generated bays of one size and the operations measured on them by the benchmarks of the bench package
+ *
+ * JMH does not accept benchmarks in the unnamed package, from which named packages cannot import, so the benchmarks
+ * call the operations of this class through method handles. Every operation takes the index of the invocation and
+ * returns a value that depends on the measured work.
+ */
+public class Fixture {
+    private static final int N_BAYS = 10; // number of bays
+    private static final long SEED = 20230101; // seed of the first bay, incremented for the others
+    private static final int SOLVE_TIME_LIMIT = 5; // time limit per solve in seconds
+
+    private final int n_stacks;
+    private final Instance[] bays;
+    private final State[] states; // states[i]: bays[i] after the initial retrievals
+    private final int[][] moves; // moves[i]: legal relocations of states[i] as s * n_stacks + d
+    private final State.Codec codec;
+    private final long[] packed; // packed states, codec.n_longs longs each
+    private final State target; // state overwritten by unpack
+    private final Move[][] sols; // sols[i]: solution of bays[i] found by JZW
+
+    /**
+     * Generate the bays of a size
+     *
+     * @param size number of stacks and number of tiers, as "6x5"
+     */
+    public Fixture(String size) {
+        n_stacks = Integer.parseInt(size.substring(0, size.indexOf('x')));
+        int n_tiers = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+
+        bays = new Instance[N_BAYS];
+        states = new State[N_BAYS];
+        moves = new int[N_BAYS][];
+        sols = new Move[N_BAYS][];
+        int max_depth = 0;
+        for (int i = 0; i < N_BAYS; i++) {
+            bays[i] = Instance.generate(n_stacks, n_tiers, n_stacks * n_tiers - n_tiers, SEED + i);
+            states[i] = State.initialize(bays[i]);
+            while (states[i].is_retrievable()) {
+                states[i].retrieve(0);
+            }
+            ArrayList<Integer> legal = new ArrayList<>();
+            for (int s = 0; s < n_stacks; s++) {
+                for (int d = 0; d < n_stacks; d++) {
+                    if (s != d && states[i].h[s] > 0 && states[i].h[d] < n_tiers) {
+                        legal.add(s * n_stacks + d);
+                    }
+                }
+            }
+            moves[i] = legal.stream().mapToInt(Integer::intValue).toArray();
+            sols[i] = new Move[UpperBound.jzw(states[i].copy(), null, 0, Integer.MAX_VALUE)];
+            UpperBound.jzw(State.initialize(bays[i]), sols[i], 0, Integer.MAX_VALUE);
+            max_depth = Math.max(max_depth, sols[i].length);
+        }
+
+        codec = new State.Codec(n_stacks, n_tiers, bays[0].n_blocks, bays[0].max_prio, max_depth);
+        packed = new long[N_BAYS * codec.n_longs];
+        for (int i = 0; i < N_BAYS; i++) {
+            codec.pack(states[i], packed, i * codec.n_longs);
+        }
+        target = states[0].copy();
+    }
+
+    public long copy(int i) {
+        return states[i % N_BAYS].copy().n_blocks;
+    }
+
+    public long pack(int i) {
+        codec.pack(states[i % N_BAYS], packed, (i % N_BAYS) * codec.n_longs);
+        return packed[(i % N_BAYS) * codec.n_longs];
+    }
+
+    public long unpack(int i) {
+        codec.unpack(packed, (i % N_BAYS) * codec.n_longs, target);
+        return target.n_bad;
+    }
+
+    public long relocate_retrieve(int i) {
+        State state = states[i % N_BAYS];
+        int[] legal = moves[i % N_BAYS];
+        int move = legal[(i / N_BAYS) % legal.length];
+        int mark = state.mark();
+        state.apply_relocate(move / n_stacks, move % n_stacks, 1);
+        while (state.is_retrievable()) {
+            state.apply_retrieve(1);
+        }
+        long n_blocks = state.n_blocks;
+        state.undo(mark);
+        return n_blocks;
+    }
+
+    public long verify(int i) {
+        return Validator.verify(bays[i % N_BAYS], sols[i % N_BAYS], sols[i % N_BAYS].length);
+    }
+
+    public long lb_ts(int i) {
+        return LowerBound.lb_ts(states[i % N_BAYS]);
+    }
+
+    public long jzw(int i) {
+        return UpperBound.jzw(states[i % N_BAYS].copy(), null, 0, Integer.MAX_VALUE);
+    }
+
+    public long sm2(int i) {
+        return UpperBound.sm2(states[i % N_BAYS].copy(), null, 0, Integer.MAX_VALUE);
+    }
+
+    public long solve(int i) {
+        Config config = new Config();
+        config.verbose = false;
+        return new Algorithm(config).solve(bays[i % N_BAYS], SOLVE_TIME_LIMIT).n_nodes;
+    }
+}
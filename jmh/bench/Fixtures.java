@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Access to the Fixture class of the unnamed package through method handles, which the JIT inlines when they are
+ * held in static final fields
+ */
+final class Fixtures {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final Class<?> FIXTURE = find("Fixture");
+    private static final MethodHandle CREATE = constructor();
+
+    private Fixtures() {
+    }
+
+    private static Class<?> find(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor() {
+        try {
+            return LOOKUP.findConstructor(FIXTURE, MethodType.methodType(void.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generate the bays of a size
+     *
+     * @param size number of stacks and number of tiers, as "6x5"
+     * @return fixture
+     */
+    static Object create(String size) {
+        try {
+            return (Object) CREATE.invokeExact(size);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Find an operation of the fixture
+     *
+     * @param name operation name
+     * @return handle invoked as (long) op.invokeExact(fixture, i)
+     */
+    static MethodHandle op(String name) {
+        try {
+            return LOOKUP.findVirtual(FIXTURE, name, MethodType.methodType(long.class, int.class))
+                    .asType(MethodType.methodType(long.class, Object.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
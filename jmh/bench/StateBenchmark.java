@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy, packing and in-place relocation with retrievals and undo of states
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class StateBenchmark {
+    private static final MethodHandle COPY = Fixtures.op("copy");
+    private static final MethodHandle PACK = Fixtures.op("pack");
+    private static final MethodHandle UNPACK = Fixtures.op("unpack");
+    private static final MethodHandle RELOCATE_RETRIEVE = Fixtures.op("relocate_retrieve");
+
+    @Param({"4x4", "6x5", "8x6", "10x8"})
+    public String size; // number of stacks and number of tiers of the bays
+
+    private Object fixture;
+    private int i; // index of the invocation
+
+    @Setup
+    public void setup() {
+        fixture = Fixtures.create(size);
+    }
+
+    @Benchmark
+    public long copy() throws Throwable {
+        return (long) COPY.invokeExact(fixture, i++);
+    }
+
+    @Benchmark
+    public long pack() throws Throwable {
+        return (long) PACK.invokeExact(fixture, i++);
+    }
+
+    @Benchmark
+    public long unpack() throws Throwable {
+        return (long) UNPACK.invokeExact(fixture, i++);
+    }
+
+    @Benchmark
+    public long relocate_retrieve() throws Throwable {
+        return (long) RELOCATE_RETRIEVE.invokeExact(fixture, i++);
+    }
+}
@@ -15,486 +15,681 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Algorithm {
 
-    private static class Branch implements Comparable<Branch> {
-        public int pri;
-        public int src;
-        public int dst;
-        public int q_src;
-        public int q_dst;
-        public int child_lb;
-        public State child_state;
-
-        public Branch(int pri, int src, int dst, int q_src, int q_dst, int child_lb, State child_state) {
-            this.pri = pri;
-            this.src = src;
-            this.dst = dst;
-            this.q_src = q_src;
-            this.q_dst = q_dst;
-            this.child_lb = child_lb;
-            this.child_state = child_state;
-        }
-
-        @Override
-        public int compareTo(Branch o) {
-            return child_lb != o.child_lb ? child_lb - o.child_lb : q_dst != o.q_dst ? q_dst - o.q_dst : q_src - o.q_src;
-        }
+    public enum Engine {
+        IDBB, // iterative deepening branch-and-bound
+        ASTAR, // best-first search, falling back to iterative deepening when its memory cap is hit
+        BEAM // anytime beam search for good solutions, falling back to iterative deepening when its width limit is hit
     }
 
-    private int n_stacks;
-    private int n_tiers;
-    private int max_prio;
-
-    private Move[] path;
-    private State[] hist;
-
-    private long n_timer;
-    private long timer_cycle;
-
-    private int best_lb;
-    private int best_ub;
+    /*
+     * Limits of the fields of the packed keys of branches (Worker), open nodes (BestFirst) and candidates (Beam)
+     */
+    public static final int MAX_STACKS = 256; // largest number of stacks, as src * n_stacks + dst is packed in 16 bits
+    public static final int MAX_PRIO = 0xfffe; // largest priority, as qualities up to max_prio + 1 are packed in 16 bits
+    public static final int MAX_DEPTH = 0x7fff; // largest number of relocations, as bounds are packed in 15 bits
+
+    final Config config;
+
+    int n_stacks;
+    int n_tiers;
+    int n_blocks;
+    int max_prio;
+
+    private Move[] moves; // moves[(p * n_stacks + s) * n_stacks + d]: shared immutable move, created on first use
+    ForkJoinPool pool; // pool of workers, or null if the search is sequential
+    State pool_root; // copy of the root state, from which the workers of the pool start, or null
+    ConcurrentLinkedQueue<Worker> spare_workers; // workers of the pool at pool_root waiting for a task, or null
+    volatile boolean stop; // set when the search is solved, cancelled or the time limit is hit
+    private volatile boolean cancelled; // set by cancel
+    LowerBound bound; // lower bound with the statistics added up from the workers
+    private Stats stats; // search statistics added up from the workers
+    TranspositionTable tt; // configurations known to be unsolvable within some depth, or null if disabled
+    ProbeCache probe_cache; // results of the heuristics per configuration, or null if disabled
+    ThreadPoolExecutor probe_pool; // helper threads running the probes, or null if the workers run them
+
+    private int init_lb;
+    private int init_ub;
+    volatile int best_lb;
+    volatile int best_ub;
     private Move[] best_sol;
     private double start_time;
-    private double end_time;
+    long deadline; // Time.get_nanos() at which the search stops
+    long check_nanos; // target time between two checks of the time limit by a worker
+    private long next_progress; // Time.get_nanos() of the next progress report
+    volatile long next_checkpoint; // Time.get_nanos() of the next checkpoint
+    boolean keep_checkpoint; // keep the checkpoints in memory, e.g., to resume a time slice
+    Checkpoint last_checkpoint; // last checkpoint saved while keep_checkpoint is set, or null
+    private long root_hash; // hash of the root configuration, saved with the checkpoints
+    private String checkpoint_error; // why the last checkpoint file could not be written, or null
     private double time_to_best_lb;
     private double time_to_best_ub;
-    private long n_nodes;
-    private long n_probe;
+    LongAdder n_nodes; // number of nodes explored, added up by the workers
+    LongAdder n_probe; // number of nodes probed, added up by the workers
+    LongAdder n_tt_hits; // number of transposition table hits, added up by the workers
+    LongAdder n_tt_misses; // number of transposition table misses, added up by the workers
 
-    private void debug_info(String status) {
-        System.out.printf("[%s] best_lb = %d @ %.3f / best_ub = %d @ %.3f / time = %.3f / nodes = %d / probe = %d\n", status, best_lb, time_to_best_lb - start_time, best_ub, time_to_best_ub - start_time, Time.get_time() - start_time, n_nodes, n_probe);
-        System.out.flush();
+    /**
+     * Create a solver with the default configuration
+     */
+    public Algorithm() {
+        this(new Config());
     }
 
-    private boolean search(int level) {
-        n_nodes++;
+    /**
+     * Create a solver
+     *
+     * @param config solver configuration
+     */
+    public Algorithm(Config config) {
+        this.config = config;
+    }
 
-        /*
-         * Check time limit
-         */
-        if (++n_timer == timer_cycle) {
-            n_timer = 0;
-            if (Time.get_time() >= end_time) {
-                return true;
-            }
-            debug_info("running");
-        }
+    /**
+     * Cancel the search, which returns its report as soon as the workers notice it
+     *
+     * May be called from any thread, including a listener, before or during solve. A cancel before solve stops the
+     * next search at once; the cancel is cleared when the search ends, so that the solver can be used again.
+     */
+    public void cancel() {
+        cancelled = true;
+        stop = true;
+    }
 
-        /*
-         * Current state
-         */
-        State curr_state = hist[level];
+    /**
+     * Take a snapshot of the search, with the counters flushed so far by the workers
+     *
+     * @return report, holding copies of the lower bound and statistics that the workers keep adding to
+     */
+    private synchronized Report report() {
+        long n_pc_hits = probe_cache != null ? probe_cache.n_hits.sum() : 0;
+        long n_pc_misses = probe_cache != null ? probe_cache.n_misses.sum() : 0;
+        Report report = new Report(init_lb, init_ub, best_lb, best_ub, Arrays.copyOf(best_sol, best_ub), time_to_best_lb - start_time, time_to_best_ub - start_time, Time.get_time() - start_time, n_nodes.sum(), n_probe.sum(), n_tt_hits.sum(), n_tt_misses.sum(), n_pc_hits, n_pc_misses, bound.copy(), Stats.ENABLED ? stats.copy() : null);
+        report.checkpoint_error = checkpoint_error;
+        return report;
+    }
 
-        /*
-         * Prepare Rule 3 (TC)
-         *
-         * min_last_change_left[s] = min{last_change_time[s'] | s' < s && h[s'] < n_tiers}
-         */
-        int[] min_last_change_left = new int[n_stacks];
-        int min_last_change_temp = Integer.MAX_VALUE;
-        for (int s = 0; s < n_stacks; s++) {
-            min_last_change_left[s] = min_last_change_temp;
-            if (curr_state.h[s] < n_tiers) {
-                min_last_change_temp = Math.min(min_last_change_temp, curr_state.last_change_time[s]);
-            }
+    synchronized void debug_info(String status) {
+        if (config.listener != null) {
+            config.listener.on_progress(status, report());
         }
-
-        /*
-         * Prepare Rule 4 (IB)
-         *
-         * max_last_move_out_right[s] = max{last_move_out_time[s'] | s' > s}
-         */
-        int[] max_last_move_out_right = new int[n_stacks];
-        int max_last_move_out_temp = 0;
-        for (int s = n_stacks - 1; s >= 0; s--) {
-            max_last_move_out_right[s] = max_last_move_out_temp;
-            max_last_move_out_temp = Math.max(max_last_move_out_temp, curr_state.last_move_out_time[s]);
+        if (!config.verbose) {
+            return;
         }
+        System.out.printf("[%s] best_lb = %d @ %.3f / best_ub = %d @ %.3f / time = %.3f / nodes = %d / probe = %d\n", status, best_lb, time_to_best_lb - start_time, best_ub, time_to_best_ub - start_time, Time.get_time() - start_time, n_nodes.sum(), n_probe.sum());
+        System.out.flush();
+    }
 
-        /*
-         * Prepare Rule 10 (SC)
-         *
-         * max_group_src_right[s] = max{k | pk == p[s][h[s]] && sk > s && last_change_type[sk] == MOVE_OUT}
-         */
-        int min_prio = curr_state.q[curr_state.s_min][curr_state.h[curr_state.s_min]];
-        int[] max_group_src_right = new int[n_stacks];
-        int[] max_group_src_temp_offset = new int[max_prio - min_prio];
-        for (int s = n_stacks - 1; s >= 0; s--) {
-            max_group_src_right[s] = curr_state.h[s] == 0 ? 0 : max_group_src_temp_offset[curr_state.p[s][curr_state.h[s]] - min_prio - 1];
-            if (curr_state.last_change_type[s] == Type.MOVE_OUT) {
-                int k = curr_state.last_change_time[s];
-                int pk = path[k - 1].p;
-                if (pk > min_prio) {
-                    max_group_src_temp_offset[pk - min_prio - 1] = Math.max(max_group_src_temp_offset[pk - min_prio - 1], k);
-                }
-            }
+    /**
+     * Report the progress if it is due
+     *
+     * @param now current time in nanoseconds
+     */
+    synchronized void progress(long now) {
+        if (now - next_progress >= 0) {
+            next_progress = now + config.progress_interval_ms * 1000000L;
+            debug_info("running");
         }
+    }
 
-        /*
-         * Prepare branching
-         */
-        ArrayList<Branch> branches = new ArrayList<>();
+    /**
+     * Check if checkpoints are saved, to the checkpoint file of the configuration or in memory
+     *
+     * @return true if checkpoints are saved
+     */
+    boolean checkpointing() {
+        return config.checkpoint_file != null || keep_checkpoint;
+    }
 
-        /*
-         * Enumerate source stack
-         */
-        for (int sn = 0; sn < n_stacks; sn++) {
-            /*
-             * Check feasibility
-             */
-            if (curr_state.h[sn] == 0) {
-                continue;
+    /**
+     * Save the progress to the checkpoint file of the configuration and in memory if keep_checkpoint is set
+     *
+     * @param frontier key of the branch searched at each level above the current node of a sequential search, or
+     *                 empty to resume from the start of the iteration
+     */
+    synchronized void checkpoint(long[] frontier) {
+        next_checkpoint = Time.get_nanos() + config.checkpoint_interval_ms * 1000000L;
+
+        Checkpoint cp = new Checkpoint();
+        cp.n_stacks = n_stacks;
+        cp.n_tiers = n_tiers;
+        cp.n_blocks = n_blocks;
+        cp.max_prio = max_prio;
+        cp.hash = root_hash;
+        cp.init_lb = init_lb;
+        cp.init_ub = init_ub;
+        cp.best_lb = best_lb;
+        cp.best_ub = best_ub;
+        cp.best_sol = best_sol;
+        cp.time_to_best_lb = time_to_best_lb - start_time;
+        cp.time_to_best_ub = time_to_best_ub - start_time;
+        cp.time_used = Time.get_time() - start_time;
+        cp.n_nodes = n_nodes.sum();
+        cp.n_probe = n_probe.sum();
+        cp.n_tt_hits = n_tt_hits.sum();
+        cp.n_tt_misses = n_tt_misses.sum();
+        cp.frontier = frontier;
+        if (keep_checkpoint) {
+            last_checkpoint = cp;
+        }
+        if (config.checkpoint_file != null) {
+            try {
+                cp.write(config.checkpoint_file);
+                checkpoint_error = null;
+            } catch (IOException e) {
+                checkpoint_error = "cannot write checkpoint " + config.checkpoint_file + ": " + e.getMessage();
+                debug_info("checkpoint failed"); // the search goes on
             }
+        }
+    }
 
-            int pn = curr_state.p[sn][curr_state.h[sn]]; // priority value
-            int lv = curr_state.l[sn][curr_state.h[sn]]; // last relocation time
+    /**
+     * Get the move of a block from one stack to another without allocating it again
+     *
+     * @param p priority value
+     * @param s source stack
+     * @param d destination stack
+     * @return move
+     */
+    Move move(int p, int s, int d) {
+        int i = (p * n_stacks + s) * n_stacks + d;
+        Move move = moves[i];
+        if (move == null) {
+            move = moves[i] = new Move(p, s, d); // racing workers create equal moves with final fields
+        }
+        return move;
+    }
 
-            if (lv > 0) {
-                int k = lv; // last time the block is relocated
-                int sk = path[k - 1].s;
+    /**
+     * Add the statistics of a worker
+     *
+     * @param worker_bound lower bound of a worker, whose statistics are reset
+     * @param worker_stats search statistics of a worker, which are reset, or null
+     */
+    synchronized void merge_bound(LowerBound worker_bound, Stats worker_stats) {
+        bound.merge(worker_bound);
+        if (worker_stats != null) {
+            stats.merge(worker_stats);
+        }
+    }
 
-                /*
-                 * Check Rule 1 (TA)
-                 */
-                if (curr_state.last_change_time[sk] == k && curr_state.last_change_type[sk] == Type.MOVE_OUT) {
-                    continue; // TA: merge two relocations and perform later
-                }
+    /**
+     * Record a solution if it is better than the best one
+     *
+     * @param len    number of relocations of the solution
+     * @param sol    array of moves, of which the first len ones form the solution
+     * @param status status shown in the debug information
+     * @return true if the search should stop
+     */
+    synchronized boolean improve(int len, Move[] sol, String status) {
+        if (len < best_ub) {
+            best_ub = len;
+            best_sol = Arrays.copyOf(sol, len);
+            time_to_best_ub = Time.get_time();
+            debug_info(status);
+            if (best_lb == best_ub) {
+                stop = true;
             }
+        }
+        return stop;
+    }
 
-            /*
-             * Check Rule 3 (TC)
-             *
-             * if exists s' < sn such that h[s'] < n_tiers && last_change_time[s'] < k
-             *
-             * min_last_change_left[s] = min{last_change_time[s'] | s' < s && h[s'] < n_tiers}
-             */
-            if (min_last_change_left[sn] < lv) {
-                continue; // TC: choose alternative transitive stack
+    /**
+     * Run a heuristic from a child for a solution better than the best one, unless the probe cache shows that it
+     * cannot find one
+     *
+     * @param child_state child state, which is not modified
+     * @param path        array of moves, of which the first len ones lead to the child
+     * @param len         number of relocations leading to the child
+     * @param heuristic   0 for jzw, 1 for sm2
+     * @return length of the solution completed in the path, or Integer.MAX_VALUE if there is none
+     */
+    int probe(State child_state, Move[] path, int len, int heuristic) {
+        int max_len = best_ub - 1;
+        ProbeCache cache = probe_cache;
+        long key = 0;
+        if (cache != null) {
+            key = ProbeCache.key(child_state.hash(), heuristic);
+            int info = cache.probe(key);
+            if (info > 0 ? len + info - 1 > max_len : info < 0 && max_len - len <= -info - 1) {
+                cache.n_hits.increment();
+                return Integer.MAX_VALUE;
             }
+            cache.n_misses.increment();
+        }
 
-            /*
-             * Check Rule 10 (SC)
-             *
-             * if exists k > last_change_time[sn] such that pk = pn && sk > sn && last_change_type[sk] == MOVE_OUT
-             *
-             * max_group_src_right[s] = max{k | pk == p[s][h[s]] && sk > s && last_change_type[sk] == MOVE_OUT}
-             */
-            if (curr_state.last_change_time[sn] < max_group_src_right[sn]) {
-                continue; // SC: swap source stacks of two relocations
-            }
+        int new_len = heuristic == 0 ? UpperBound.jzw(child_state.copy(), path, len, max_len) : UpperBound.sm2(child_state.copy(), path, len, max_len);
 
-            /*
-             * Prepare Rule 11 (SD)
-             *
-             * max_group_dst_right[d] = max{k | pk == pn && dk > d && last_change_type[dk] == MOVE_IN}
-             */
-            int[] max_group_dst_right = new int[n_stacks];
-            int max_group_dst_temp = 0;
-            for (int d = n_stacks - 1; d >= 0; d--) {
-                max_group_dst_right[d] = max_group_dst_temp;
-                if (curr_state.last_change_type[d] == Type.MOVE_IN) {
-                    int k = curr_state.last_change_time[d];
-                    int pk = path[k - 1].p;
-                    if (pk == pn) {
-                        max_group_dst_temp = Math.max(max_group_dst_temp, k);
-                    }
-                }
+        if (cache != null) {
+            if (new_len != Integer.MAX_VALUE) {
+                cache.store_solved(key, new_len - len);
+            } else {
+                cache.store_failed(key, max_len - len);
             }
+        }
+        return new_len;
+    }
 
-            /*
-             * Enumerate destination stack
-             */
-            boolean first_empty = true;
-            for (int dn = 0; dn < n_stacks; dn++) {
-                /*
-                 * Check feasibility
-                 */
-                if (dn == sn || curr_state.h[dn] == n_tiers) {
-                    continue;
+    /**
+     * Probe a child with both heuristics on a helper thread, or on the calling thread if the queue is full
+     *
+     * The probe is counted once its first heuristic finishes, and each heuristic in the statistics as it finishes, so
+     * that the probes dropped when the search stops are not counted.
+     *
+     * @param child_state copy of the child state
+     * @param path        copy of the array of moves, of which the first len ones lead to the child
+     * @param len         number of relocations leading to the child
+     */
+    void probe_async(State child_state, Move[] path, int len) {
+        probe_pool.execute(() -> {
+            for (int heuristic = 0; heuristic < 2 && !stop; heuristic++) {
+                int new_len = probe(child_state, path, len, heuristic);
+                if (Stats.ENABLED) {
+                    count_probe(heuristic, new_len);
                 }
-
-                /*
-                 * Check Rule 7 (EA)
-                 */
-                if (curr_state.h[dn] == 0) {
-                    if (first_empty) {
-                        first_empty = false;
-                    } else {
-                        continue; // EA: choose the leftmost empty stack
-                    }
+                if (heuristic == 0) {
+                    n_probe.increment();
                 }
-
-                /*
-                 * Check Rule 2 (TB)
-                 */
-                if (curr_state.last_change_time[dn] < lv) {
-                    continue; // TB: merge two relocations and perform earlier
+                if (new_len != Integer.MAX_VALUE) {
+                    improve(new_len, path, "update");
                 }
+            }
+        });
+    }
 
-                /*
-                 * Check Rule 4 (IB)
-                 *
-                 * if exists s' > s such that last_move_out_time[s'] > max{last_change_time[sn], last_change_time[dn]}
-                 *
-                 * max_last_move_out_right[s] = max{last_move_out_time[s'] | s' > s}
-                 */
-                if (Math.max(curr_state.last_change_time[sn], curr_state.last_change_time[dn]) < max_last_move_out_right[sn]) {
-                    continue; // IB: perform (pn, sn, dn) before (*, s', *)
-                }
+    /**
+     * Count a probe run on a helper thread in the statistics
+     *
+     * @param heuristic 0 for jzw, 1 for sm2
+     * @param new_len   length of the solution found, Integer.MAX_VALUE if none
+     */
+    private synchronized void count_probe(int heuristic, int new_len) {
+        if (heuristic == 0) {
+            stats.probe_jzw(new_len);
+        } else {
+            stats.probe_sm2(new_len);
+        }
+    }
 
-                if (curr_state.last_change_type[dn] == Type.MOVE_OUT) {
-                    int k = curr_state.last_change_time[dn];
-                    int pk = path[k - 1].p;
-                    int dk = path[k - 1].d;
-                    if (pk == pn) {
-                        /*
-                         * Check Rule 8 (SA)
-                         */
-                        if (curr_state.last_change_time[sn] < k) {
-                            continue; // SA: merge two relocations and perform earlier
-                        }
-
-                        /*
-                         * Check Rule 9 (SB)
-                         */
-                        if (curr_state.last_change_time[dk] == k) {
-                            continue; // SB: merge two relocations and perform later
-                        }
-                    }
-                }
+    /**
+     * Raise the best lower bound
+     *
+     * @param lb     new lower bound
+     * @param status status shown in the debug information
+     * @return true if the search should stop
+     */
+    synchronized boolean improve_lb(int lb, String status) {
+        if (lb > best_lb) {
+            best_lb = lb;
+            time_to_best_lb = Time.get_time();
+            debug_info(status);
+            if (best_lb >= best_ub) {
+                stop = true;
+            }
+        }
+        return stop;
+    }
 
-                /*
-                 * Check Rule 11 (SD)
-                 *
-                 * if exists k > last_change_time[dn] such that pk = pn && dk > dn && last_change_type[dk] == MOVE_IN
-                 *
-                 * max_group_dst_right[d] = max{k | pk == pn && dk > d && last_change_type[dk] == MOVE_IN}
-                 */
-                if (curr_state.last_change_time[dn] < max_group_dst_right[dn]) {
-                    continue; // SD: swap destination stacks of two relocations
-                }
+    /**
+     * Solve an instance by the engine of the configuration
+     *
+     * @param inst       instance to be solved
+     * @param time_limit time limit in seconds
+     * @return solution report
+     */
+    public Report solve(Instance inst, int time_limit) {
+        return solve(inst, (double) time_limit);
+    }
 
-                /*
-                 * Child node
-                 */
-                State child_state = curr_state.copy();
-                child_state.relocate(sn, dn, level + 1);
-
-                /*
-                 * Update path when generating branches
-                 */
-                path[level] = new Move(pn, sn, dn);
-
-                /*
-                 * Retrieve
-                 */
-                boolean dominated = false;
-                while (child_state.is_retrievable()) {
-                    int s_min = child_state.s_min;
-                    int p = child_state.p[s_min][child_state.h[s_min]];
-                    int l = child_state.l[s_min][child_state.h[s_min]];
-
-                    if (l > 0) {
-                        int k = l;
-                        int sk = path[k - 1].s;
-
-                        /*
-                         * Check Rule 5 (RA)
-                         */
-                        if (child_state.last_move_out_time[sk] == k && child_state.last_move_in_time[sk] < k && hist[k - 1].q[sk][hist[k - 1].h[sk]] == p) {
-                            dominated = true; // RA: k-th relocation can be left out
-                            break; // no need to continue retrievals
-                        }
-
-                        for (int d = 0; d < s_min; d++) {
-                            /*
-                             * Check Rule 6 (RB)
-                             */
-                            if (hist[k - 1].h[d] < n_tiers && child_state.last_move_out_time[d] < k && child_state.last_move_in_time[d] < k && hist[k - 1].q[d][hist[k - 1].h[d]] >= p) {
-                                dominated = true; // RB: choose alternative transitive stack
-                                break; // no need to test more
-                            }
-                        }
-                        if (dominated) {
-                            break; // no need to continue retrievals
-                        }
-                    }
-
-                    child_state.retrieve(level + 1);
-                }
+    /**
+     * Solve an instance by the engine of the configuration
+     *
+     * @param inst       instance to be solved
+     * @param time_limit time limit in seconds, accurate to the millisecond
+     * @return solution report
+     */
+    public Report solve(Instance inst, double time_limit) {
+        return solve(inst, time_limit, null, false);
+    }
 
-                if (dominated) {
-                    continue; // dominated according to RA or RB
-                }
+    /**
+     * Continue the search of an instance from a checkpoint file, by iterative deepening from the iteration and the
+     * branches in progress when it was written; the times and counters of the report include those of the checkpoint
+     *
+     * @param inst       instance of the checkpoint
+     * @param path       checkpoint file name
+     * @param time_limit time limit of this run in seconds, accurate to the millisecond
+     * @return solution report
+     * @throws IOException file cannot be read or is not a checkpoint of the instance
+     */
+    public Report resume(Instance inst, String path, double time_limit) throws IOException {
+        Checkpoint cp = Checkpoint.read(path);
+        if (!cp.matches(inst)) {
+            throw new IOException("checkpoint of another instance: " + path);
+        }
+        return solve(inst, time_limit, cp, true);
+    }
 
-                /*
-                 * Goal test
-                 */
-                if (child_state.n_blocks == 0) {
-                    best_ub = level + 1;
-                    best_sol = Arrays.copyOf(path, best_ub);
-                    time_to_best_ub = Time.get_time();
-                    debug_info("goal");
-                    return true;
-                }
+    /**
+     * Continue the search of an instance from a checkpoint kept in memory, as resume from a file does
+     *
+     * @param inst       instance of the checkpoint
+     * @param cp         checkpoint
+     * @param time_limit time limit of this run in seconds, accurate to the millisecond
+     * @return solution report
+     * @throws IllegalArgumentException checkpoint of another instance
+     */
+    public Report resume(Instance inst, Checkpoint cp, double time_limit) {
+        if (!cp.matches(inst)) {
+            throw new IllegalArgumentException("checkpoint of another instance");
+        }
+        return solve(inst, time_limit, cp, true);
+    }
 
-                /*
-                 * Child lower bound
-                 */
-                int child_lb = LowerBound.lb_ts(child_state);
+    /**
+     * Solve an instance that differs slightly from one solved before, starting from the previous solution repaired for
+     * it instead of the initial heuristics
+     *
+     * The previous solution is replayed on the instance as long as its relocations are legal, and the rest is
+     * completed by the better of the heuristics. If the instance is the previous one after some relocations of the
+     * previous solution, e.g., because the crane carried them out, its remaining relocations are the solution and the
+     * previous lower bound minus the relocations carried out still holds.
+     *
+     * @param prev_inst  previous instance
+     * @param prev       report of the previous instance
+     * @param inst       instance to be solved
+     * @param time_limit time limit in seconds, accurate to the millisecond
+     * @return solution report
+     */
+    public Report resolve(Instance prev_inst, Report prev, Instance inst, double time_limit) {
+        Checkpoint seed = prev != null && prev.best_sol != null ? warm_start(prev_inst, prev, inst) : null;
+        return solve(inst, time_limit, seed, false);
+    }
 
-                /*
-                 * Lower bounding
-                 */
-                if (level + 1 + child_lb > best_lb) {
-                    continue;
-                }
+    /**
+     * Repair a previous solution for an instance
+     *
+     * @param prev_inst previous instance
+     * @param prev      report of the previous instance
+     * @param inst      instance to be solved
+     * @return bounds and solution to start from, or null if the repair fails
+     */
+    static Checkpoint warm_start(Instance prev_inst, Report prev, Instance inst) {
+        State root_state = State.initialize(inst);
+        while (root_state.is_retrievable()) {
+            root_state.retrieve(0);
+        }
+        if (root_state.n_blocks == 0) {
+            return null;
+        }
 
-                /*
-                 * Probing
-                 */
-                if (level + 1 + child_lb == best_lb - 1) {
-                    n_probe++;
-
-                    int new_len_jzw = UpperBound.jzw(child_state.copy(), path, level + 1, best_ub - 1);
-                    if (new_len_jzw != Integer.MAX_VALUE) {
-                        best_ub = new_len_jzw;
-                        best_sol = Arrays.copyOf(path, best_ub);
-                        time_to_best_ub = Time.get_time();
-                        debug_info("update");
-                        if (best_lb == best_ub) {
-                            return true;
-                        }
-                    }
-
-                    int new_len_sm2 = UpperBound.sm2(child_state.copy(), path, level + 1, best_ub - 1);
-                    if (new_len_sm2 != Integer.MAX_VALUE) {
-                        best_ub = new_len_sm2;
-                        best_sol = Arrays.copyOf(path, best_ub);
-                        time_to_best_ub = Time.get_time();
-                        debug_info("update");
-                        if (best_lb == best_ub) {
-                            return true;
-                        }
-                    }
-                }
+        Checkpoint seed = new Checkpoint();
+        seed.frontier = new long[0];
 
-                /*
-                 * Non-dominated branches
-                 */
-                branches.add(new Branch(pn, sn, dn, curr_state.q[sn][curr_state.h[sn]], curr_state.q[dn][curr_state.h[dn]], child_lb, child_state));
+        /*
+         * Look for the instance along the previous solution
+         */
+        if (prev_inst.n_stacks == inst.n_stacks && prev_inst.n_tiers == inst.n_tiers) {
+            State prev_state = State.initialize(prev_inst);
+            for (int k = 0; k <= prev.best_ub; k++) {
+                while (prev_state.is_retrievable()) {
+                    prev_state.retrieve(k);
+                }
+                if (same_configuration(prev_state, root_state)) {
+                    seed.best_lb = Math.max(0, prev.best_lb - k);
+                    seed.best_ub = prev.best_ub - k;
+                    seed.best_sol = Arrays.copyOfRange(prev.best_sol, k, prev.best_ub);
+                    seed.init_ub = seed.best_ub;
+                    return seed;
+                }
+                if (k < prev.best_ub) {
+                    prev_state.relocate(prev.best_sol[k].s, prev.best_sol[k].d, k + 1);
+                }
             }
         }
 
         /*
-         * Depth-first search
+         * Replay the previous solution up to its first illegal relocation
          */
-        if (!branches.isEmpty()) {
-            Collections.sort(branches);
-
-            for (Branch b : branches) {
-                path[level] = new Move(b.pri, b.src, b.dst);
-                hist[level + 1] = b.child_state;
-
-                if (search(level + 1)) {
-                    return true;
-                }
+        State state = root_state.copy();
+        int stride = state.stride;
+        int len = 0;
+        while (len < prev.best_ub && state.n_blocks > 0) {
+            Move move = prev.best_sol[len];
+            if (move.s >= state.n_stacks || move.d >= state.n_stacks || move.s == move.d || state.h[move.s] == 0 || state.p[move.s * stride + state.h[move.s]] != move.p || state.h[move.d] == state.n_tiers) {
+                break;
+            }
+            state.relocate(move.s, move.d, ++len);
+            while (state.is_retrievable()) {
+                state.retrieve(len);
             }
         }
 
-        return false;
+        /*
+         * Complete it by the better heuristic
+         */
+        int len_jzw = UpperBound.jzw(state.copy(), null, len, Integer.MAX_VALUE);
+        int len_sm2 = UpperBound.sm2(state.copy(), null, len, Integer.MAX_VALUE);
+        if (Math.min(len_jzw, len_sm2) == Integer.MAX_VALUE) {
+            return null;
+        }
+        seed.best_ub = Math.min(len_jzw, len_sm2);
+        seed.best_sol = Arrays.copyOf(prev.best_sol, seed.best_ub);
+        if (len_jzw < len_sm2) {
+            UpperBound.jzw(state, seed.best_sol, len, Integer.MAX_VALUE);
+        } else {
+            UpperBound.sm2(state, seed.best_sol, len, Integer.MAX_VALUE);
+        }
+        seed.init_ub = seed.best_ub;
+        return seed;
     }
 
     /**
-     * Solve an instance by iterative deepening branch-and-bound
+     * Check if two states have the same configuration, i.e., heights and priorities of all stacks
      *
-     * @param inst       instance to be solved
-     * @param time_limit time limit in seconds
-     * @return solution report
+     * @param a a state
+     * @param b another state of the same size
+     * @return true if the configurations are the same
      */
-    public Report solve(Instance inst, int time_limit) {
+    private static boolean same_configuration(State a, State b) {
+        for (int s = 0; s < a.n_stacks; s++) {
+            if (a.h[s] != b.h[s]) {
+                return false;
+            }
+            for (int t = 1; t <= a.h[s]; t++) {
+                if (a.p[s * a.stride + t] != b.p[s * b.stride + t]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Report solve(Instance inst, double time_limit, Checkpoint from, boolean resume) {
+        try {
+            return search(inst, time_limit, from, resume);
+        } finally {
+            cancelled = false; // also after a bay without relocations or without solution, which returns early
+        }
+    }
+
+    private Report search(Instance inst, double time_limit, Checkpoint from, boolean resume) {
+        if (inst.n_stacks > MAX_STACKS || inst.max_prio > MAX_PRIO) {
+            throw new IllegalArgumentException("at most " + MAX_STACKS + " stacks and priorities up to " + MAX_PRIO + " are supported");
+        }
+
         /*
          * Parameters
          */
         n_stacks = inst.n_stacks;
         n_tiers = inst.n_tiers;
+        n_blocks = inst.n_blocks;
         max_prio = inst.max_prio;
-        start_time = Time.get_time();
-        end_time = start_time + time_limit;
+        moves = new Move[(max_prio + 1) * n_stacks * n_stacks];
+        long start_nanos = Time.get_nanos();
+        start_time = start_nanos * 1e-9;
+        deadline = start_nanos + (long) (time_limit * 1e9);
+        check_nanos = config.check_interval_ms * 1000000L;
+        next_progress = start_nanos + config.progress_interval_ms * 1000000L;
+        next_checkpoint = start_nanos + config.checkpoint_interval_ms * 1000000L;
+        checkpoint_error = null;
 
         /*
          * Root state
          */
-        State root_state = State.initialize(inst);
+        State root_state = State.initialize(inst, new Zobrist(n_stacks, n_tiers, max_prio));
         while (root_state.is_retrievable()) {
             root_state.retrieve(0);
         }
         if (root_state.n_blocks == 0) {
-            return new Report(0, 0, 0, 0, null, 0, 0, 0, 0, 0);
+            return new Report(0, 0, 0, 0, null, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, null);
         }
+        root_hash = root_state.hash();
 
         /*
-         * Check if there is a solution
+         * Check if there is a solution; the heuristics are not run again for a checkpoint, and only look for a solution
+         * better than a warm start, giving up as soon as they cannot find one
          */
-        int init_len_jzw = UpperBound.jzw(root_state.copy(), null, 0, Integer.MAX_VALUE);
-        int init_len_sm2 = UpperBound.sm2(root_state.copy(), null, 0, Integer.MAX_VALUE);
-        int max_depth = Math.min(init_len_jzw, init_len_sm2);
+        int max_len = from != null ? from.best_ub - 1 : Integer.MAX_VALUE;
+        int init_len_jzw = resume ? Integer.MAX_VALUE : UpperBound.jzw(root_state.copy(), null, 0, max_len);
+        int init_len_sm2 = resume ? Integer.MAX_VALUE : UpperBound.sm2(root_state.copy(), null, 0, max_len);
+        int max_depth = Math.min(from != null ? from.init_ub : Integer.MAX_VALUE, Math.min(init_len_jzw, init_len_sm2));
         if (max_depth == Integer.MAX_VALUE) {
             return null;
         }
-
-        /*
-         * Temporary variables for branch-and-bound
-         */
-        path = new Move[max_depth];
-        hist = new State[max_depth + 1];
+        if (max_depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("solutions of more than " + MAX_DEPTH + " relocations are not supported");
+        }
 
         /*
          * Root lower bound
          */
-        int root_lb = LowerBound.lb_ts(root_state);
+        bound = LowerBound.create(config.lower_bound);
+        int root_lb = bound.eval(root_state);
+        init_lb = root_lb;
+        init_ub = max_depth;
+        stats = new Stats(max_depth);
 
         /*
          * Initialize best lower and upper bounds
          */
         best_lb = root_lb;
         time_to_best_lb = start_time;
-        best_sol = new Move[max_depth];
-        best_ub = init_len_jzw < init_len_sm2 ? UpperBound.jzw(root_state.copy(), best_sol, 0, Integer.MAX_VALUE) : UpperBound.sm2(root_state.copy(), best_sol, 0, Integer.MAX_VALUE);
+        if (from != null && from.best_ub <= Math.min(init_len_jzw, init_len_sm2)) {
+            best_sol = from.best_sol;
+            best_ub = from.best_ub;
+        } else {
+            best_sol = new Move[max_depth];
+            best_ub = init_len_jzw < init_len_sm2 ? UpperBound.jzw(root_state.copy(), best_sol, 0, Integer.MAX_VALUE) : UpperBound.sm2(root_state.copy(), best_sol, 0, Integer.MAX_VALUE);
+        }
         time_to_best_ub = start_time;
 
         /*
-         * Initialize history
+         * Worker searching the root state in place
          */
-        hist[0] = root_state;
+        Worker root_worker = new Worker(this, root_state, max_depth);
 
         /*
          * Iterative deepening search
          */
-        n_nodes = 0;
-        n_probe = 0;
-        n_timer = 0;
-        timer_cycle = 100000;
-
-        debug_info("start");
-        while (best_lb < best_ub) {
-            if (search(0)) {
-                break;
+        n_nodes = new LongAdder();
+        n_probe = new LongAdder();
+        n_tt_hits = new LongAdder();
+        n_tt_misses = new LongAdder();
+        tt = config.tt_size_mb > 0 ? new TranspositionTable(config.tt_size_mb, config.tt_policy) : null;
+        probe_cache = config.probe_cache_mb > 0 ? new ProbeCache(config.probe_cache_mb) : null;
+        probe_pool = config.deterministic ? null : new ThreadPoolExecutor(config.probe_threads, config.probe_threads, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(config.probe_queue), new ThreadPoolExecutor.CallerRunsPolicy());
+        stop = cancelled;
+
+        /*
+         * Continue from a checkpoint, with its time and counters, or from a warm start
+         */
+        if (from != null) {
+            init_lb = Math.max(init_lb, from.init_lb);
+            best_lb = Math.max(best_lb, from.best_lb);
+            start_time -= from.time_used;
+            time_to_best_lb = start_time + from.time_to_best_lb;
+            time_to_best_ub = start_time + from.time_to_best_ub;
+            n_nodes.add(from.n_nodes);
+            n_probe.add(from.n_probe);
+            n_tt_hits.add(from.n_tt_hits);
+            n_tt_misses.add(from.n_tt_misses);
+            if (best_lb == from.best_lb) {
+                root_worker.resume(from.frontier);
             }
-            best_lb++;
-            time_to_best_lb = Time.get_time();
-            debug_info("deepen");
         }
-        debug_info("end");
+        pool = config.n_threads > 1 ? new ForkJoinPool(config.n_threads) : null;
+        pool_root = pool != null ? root_state.copy() : null;
+        spare_workers = pool != null ? new ConcurrentLinkedQueue<>() : null;
+
+        try {
+            debug_info("start");
+            if (resume) {
+                debug_info("resume"); // the engine of the checkpoint has already run
+            } else if (config.engine == Engine.ASTAR) {
+                new BestFirst(this, root_worker, max_depth, config.astar_size_mb).search(); // when the memory cap is hit, deepening goes on from the smallest f of the open list
+                root_worker.flush();
+            } else if (config.engine == Engine.BEAM) {
+                new Beam(this, root_state).search();
+            }
+
+            /*
+             * The engines keep no frontier, so a time limit hit by them is saved for a resume deepening from the best
+             * lower bound
+             */
+            if (!resume && stop && checkpointing() && Time.get_nanos() - deadline >= 0) {
+                checkpoint(new long[0]);
+            }
+
+            while (!stop && best_lb < best_ub) {
+                boolean done = pool != null ? pool.invoke(new Worker.Task(root_worker, 0)) : root_worker.search(0);
+                root_worker.flush();
+                root_worker.resume(new long[0]); // the frontier only applies to the first iteration
+                if (done) {
+                    break;
+                }
+                best_lb++;
+                time_to_best_lb = Time.get_time();
+                debug_info("deepen");
+                if (checkpointing() && Time.get_nanos() - next_checkpoint >= 0) {
+                    checkpoint(new long[0]);
+                }
+            }
+            debug_info("end");
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+                pool_root = null;
+                spare_workers = null;
+            }
+            if (probe_pool != null) {
+                probe_pool.shutdownNow();
+                try {
+                    probe_pool.awaitTermination(1, TimeUnit.MINUTES); // no late improvement after the report
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                probe_pool = null;
+            }
+            tt = null;
+        }
 
         /*
          * Report
          */
-        return new Report(root_lb, max_depth, best_lb, best_ub, Arrays.copyOf(best_sol, best_ub), time_to_best_lb - start_time, time_to_best_ub - start_time, Time.get_time() - start_time, n_nodes, n_probe);
+        Report report = report();
+        probe_cache = null;
+        return report;
     }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class Batch {
+    private static final String CSV_HEADER = "name,status,n_stacks,n_tiers,n_blocks,init_lb,init_ub,best_lb,best_ub,time_to_best_lb,time_to_best_ub,time_used,n_nodes,n_probe";
+
+    /**
+     * Result of one instance of a batch
+     */
+    private static class Result {
+        String name; // name of the instance
+        Instance inst; // instance, or null if it could not be read
+        Report report; // report, or null if the instance has no solution or could not be solved
+        String status; // "solved", "timeout", "infeasible" or the error message
+    }
+
+    /**
+     * List the instance files of a batch
+     *
+     * @param input directory, whose regular files are all taken, or a glob on file names such as data/*.txt
+     * @return instance files sorted by name
+     * @throws IOException directory cannot be read
+     */
+    public static List<Path> list_instances(String input) throws IOException {
+        Path path = Paths.get(input);
+        Path dir = Files.isDirectory(path) ? path : path.toAbsolutePath().getParent();
+        String glob = Files.isDirectory(path) ? "*" : path.getFileName().toString();
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Solve instances concurrently, one sequential solver per instance, and write a line per instance as soon as it
+     * is finished, so the lines come in order of completion
+     *
+     * @param files      instance files
+     * @param time_limit time limit per instance in seconds
+     * @param n_threads  number of instances solved at the same time
+     * @param config     solver configuration shared by all instances, which should not be verbose
+     * @param out        output stream, which is flushed after each instance but not closed
+     * @param format     format of the SolutionWriter records, with the solutions, or null for a CSV summary with a
+     *                   header and without the solutions
+     * @throws IOException          output cannot be written
+     * @throws InterruptedException interrupted while waiting for results
+     */
+    public static void run(List<Path> files, int time_limit, int n_threads, Config config, OutputStream out, SolutionWriter.Format format) throws IOException, InterruptedException {
+        List<String> names = new ArrayList<>();
+        List<Callable<Instance>> loaders = new ArrayList<>();
+        for (Path file : files) {
+            names.add(file.getFileName().toString());
+            loaders.add(() -> Instance.read_instance(file.toString()));
+        }
+        run(names, loaders, time_limit, n_threads, config, out, format);
+    }
+
+    /**
+     * Solve the bays of a bay file concurrently, as run on instance files
+     *
+     * @param bays       bay file
+     * @param time_limit time limit per instance in seconds
+     * @param n_threads  number of instances solved at the same time
+     * @param config     solver configuration shared by all instances, which should not be verbose
+     * @param out        output stream, which is flushed after each instance but not closed
+     * @param format     format of the SolutionWriter records, with the solutions, or null for a CSV summary with a
+     *                   header and without the solutions
+     * @throws IOException          output cannot be written
+     * @throws InterruptedException interrupted while waiting for results
+     */
+    public static void run(BayFile bays, int time_limit, int n_threads, Config config, OutputStream out, SolutionWriter.Format format) throws IOException, InterruptedException {
+        List<String> names = new ArrayList<>();
+        List<Callable<Instance>> loaders = new ArrayList<>();
+        for (int i = 0; i < bays.size(); i++) {
+            int index = i;
+            names.add(bays.name(i));
+            loaders.add(() -> bays.get(index));
+        }
+        run(names, loaders, time_limit, n_threads, config, out, format);
+    }
+
+    private static void run(List<String> names, List<Callable<Instance>> loaders, int time_limit, int n_threads, Config config, OutputStream out, SolutionWriter.Format format) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(n_threads);
+        try {
+            CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                Callable<Instance> loader = loaders.get(i);
+                completion.submit(() -> solve(name, loader, time_limit, config));
+            }
+
+            SolutionWriter writer = format != null ? new SolutionWriter(Channels.newChannel(out), format) : null;
+            PrintStream csv = format == null ? new PrintStream(out) : null;
+            if (writer != null) {
+                writer.flush();
+            } else {
+                csv.print(CSV_HEADER + "\n");
+                csv.flush();
+            }
+            for (int i = 0; i < names.size(); i++) {
+                Result result;
+                try {
+                    result = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause()); // solve catches everything thrown by the solver
+                }
+                if (writer != null) {
+                    writer.write(result.name, result.status, result.report);
+                    writer.flush();
+                } else {
+                    csv.print(to_csv(result) + "\n");
+                    csv.flush();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Solve one instance of a batch
+     *
+     * @param name       name of the instance
+     * @param loader     loader of the instance
+     * @param time_limit time limit in seconds
+     * @param config     solver configuration
+     * @return result
+     */
+    private static Result solve(String name, Callable<Instance> loader, int time_limit, Config config) {
+        Result result = new Result();
+        result.name = name;
+        try {
+            result.inst = loader.call();
+            result.report = new Algorithm(config).solve(result.inst, time_limit);
+            result.status = result.report == null ? "infeasible" : result.report.best_lb == result.report.best_ub ? "solved" : "timeout";
+        } catch (Exception e) {
+            result.report = null;
+            result.status = String.valueOf(e);
+        }
+        return result;
+    }
+
+    /**
+     * Format a result as a CSV line
+     *
+     * @param result result
+     * @return line without line break
+     */
+    private static String to_csv(Result result) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(csv_field(result.name)).append(',').append(csv_field(result.status));
+        if (result.inst != null) {
+            sb.append(',').append(result.inst.n_stacks).append(',').append(result.inst.n_tiers).append(',').append(result.inst.n_blocks);
+        } else {
+            sb.append(",,,");
+        }
+        Report r = result.report;
+        if (r != null) {
+            sb.append(String.format(Locale.ROOT, ",%d,%d,%d,%d,%.3f,%.3f,%.3f,%d,%d", r.init_lb, r.init_ub, r.best_lb, r.best_ub, r.time_to_best_lb, r.time_to_best_ub, r.time_used, r.n_nodes, r.n_probe));
+        } else {
+            sb.append(",,,,,,,,,");
+        }
+        return sb.toString();
+    }
+
+    private static String csv_field(String s) {
+        return s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 ? s : "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Binary file holding many instances, read through a memory mapping
+ *
+ * Layout, big-endian: the magic "BAYS", the version and the number of bays as ints and a reserved int, then the
+ * offset of each bay from the start of the file as a long, then the bays. A bay is its name as a char length and
+ * UTF-8 bytes, followed by the instance as written by Instance.write_instance(ByteBuffer).
+ */
+public class BayFile {
+    private static final int MAGIC = 0x42415953; // "BAYS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer buf; // whole file, only read with absolute positions or through duplicates
+    private final int n_bays;
+
+    private BayFile(ByteBuffer buf) throws IOException {
+        if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException("not a bay file of version " + VERSION);
+        }
+        this.buf = buf;
+        this.n_bays = buf.getInt(8);
+    }
+
+    /**
+     * Open a bay file by mapping it into memory, which stays valid after the channel is closed
+     *
+     * @param path bay file name
+     * @return bay file
+     * @throws IOException file cannot be read, is not a bay file or is larger than 2 GB
+     */
+    public static BayFile open(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("bay file larger than 2 GB: " + path);
+            }
+            return new BayFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Get the number of bays
+     *
+     * @return number of bays
+     */
+    public int size() {
+        return n_bays;
+    }
+
+    /**
+     * Get the name of a bay
+     *
+     * @param i index of the bay
+     * @return name
+     */
+    public String name(int i) {
+        ByteBuffer bay = bay(i);
+        byte[] name = new byte[bay.getChar()];
+        bay.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a bay, directly from the mapped file; safe to call from several threads
+     *
+     * @param i index of the bay
+     * @return created instance
+     */
+    public Instance get(int i) {
+        ByteBuffer bay = bay(i);
+        bay.position(bay.position() + 2 + bay.getChar(bay.position()));
+        return Instance.read_instance(bay);
+    }
+
+    private ByteBuffer bay(int i) {
+        if (i < 0 || i >= n_bays) {
+            throw new IndexOutOfBoundsException("bay " + i + " of " + n_bays);
+        }
+        ByteBuffer bay = buf.duplicate();
+        bay.position((int) buf.getLong(HEADER_BYTES + 8 * i));
+        return bay;
+    }
+
+    /**
+     * Write a bay file
+     *
+     * @param path  bay file name
+     * @param names names of the bays
+     * @param insts instances of the bays
+     * @throws IOException              file cannot be written
+     * @throws IllegalArgumentException name of more than 65535 UTF-8 bytes
+     */
+    public static void write(String path, List<String> names, List<Instance> insts) throws IOException {
+        byte[][] name_bytes = new byte[insts.size()][];
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + 8 * insts.size());
+        header.putInt(MAGIC).putInt(VERSION).putInt(insts.size()).putInt(0);
+        long offset = header.capacity();
+        for (int i = 0; i < insts.size(); i++) {
+            name_bytes[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            if (name_bytes[i].length > Character.MAX_VALUE) {
+                throw new IllegalArgumentException("name of more than " + (int) Character.MAX_VALUE + " bytes");
+            }
+            header.putLong(offset);
+            offset += 2 + name_bytes[i].length + insts.get(i).binary_size();
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("bay file larger than 2 GB: " + path);
+        }
+        header.flip();
+
+        Path file = Paths.get(path);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write_fully(channel, header);
+            for (int i = 0; i < insts.size(); i++) {
+                ByteBuffer bay = ByteBuffer.allocate(2 + name_bytes[i].length + insts.get(i).binary_size());
+                bay.putChar((char) name_bytes[i].length).put(name_bytes[i]);
+                insts.get(i).write_instance(bay);
+                bay.flip();
+                write_fully(channel, bay);
+            }
+        }
+    }
+
+    private static void write_fully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Anytime beam search
+ *
+ * Each level keeps the best children of the previous one, ranked by the length of the solution completed by the
+ * better of the two heuristics and then by lower bound, with one child per configuration. Every complete solution
+ * shorter than the best one is recorded at once. The beam width is doubled after each pass, so that the search can
+ * run until the time limit.
+ */
+public class Beam {
+    public static final int MAX_WIDTH = 1 << 16; // beam width limit, as a node is packed in 16 bits of a candidate
+    private static final int CHECK_CYCLE = 16; // nodes expanded between two checks of the time limit
+
+    /**
+     * Smallest packed keys offered with distinct hashes, at most a given number of them, kept in a max-heap so that
+     * only the selection is stored instead of every child; of two keys with the same hash, only the smaller one is kept
+     */
+    static class Candidates {
+        private static final int FREE = -1; // slot of the index never used since the last rebuild
+        private static final int REMOVED = -2; // slot of the index whose key has left the heap
+
+        final long[] keys; // keys[0]: largest key kept, keys[k] >= keys[2k+1], keys[2k+2]
+        final long[] hashes; // hashes[k]: hash of the child of keys[k]
+        int size; // number of keys kept
+
+        private final long[] slot_hashes; // open addressing index from hashes to positions in the heap
+        private final int[] slot_pos; // slot_pos[i]: position in the heap of slot_hashes[i], FREE or REMOVED
+        private int n_used; // number of slots not FREE
+
+        Candidates(int capacity) {
+            this.keys = new long[capacity];
+            this.hashes = new long[capacity];
+            int n_slots = Integer.highestOneBit(Math.max(1, capacity)) * 4;
+            this.slot_hashes = new long[n_slots];
+            this.slot_pos = new int[n_slots];
+            Arrays.fill(slot_pos, FREE);
+        }
+
+        /**
+         * Keep a key if it is among the smallest ones offered so far with distinct hashes
+         *
+         * @param key  packed key
+         * @param hash hash of the child
+         */
+        void offer(long key, long hash) {
+            int slot = find(hash);
+            if (slot_pos[slot] >= 0) {
+                if (key < keys[slot_pos[slot]]) {
+                    sift_down(slot_pos[slot], key, hash);
+                }
+            } else if (size < keys.length) {
+                add(hash);
+                sift_up(size++, key, hash);
+            } else if (size > 0 && key < keys[0]) {
+                add(hash);
+                slot_pos[find(hashes[0])] = REMOVED;
+                sift_down(0, key, hash);
+            }
+        }
+
+        /**
+         * Find the slot of a hash, or the free slot where it would be added
+         *
+         * @param hash hash of a child
+         * @return slot
+         */
+        private int find(long hash) {
+            int mask = slot_hashes.length - 1;
+            int i = (int) Zobrist.mix(hash) & mask;
+            int free = -1;
+            while (slot_pos[i] != FREE && (slot_pos[i] == REMOVED || slot_hashes[i] != hash)) {
+                if (free < 0 && slot_pos[i] == REMOVED) {
+                    free = i;
+                }
+                i = (i + 1) & mask;
+            }
+            return slot_pos[i] == FREE && free >= 0 ? free : i;
+        }
+
+        /**
+         * Add a hash to the index, whose position is set by the next sift, rebuilding the index once half of its slots
+         * are used
+         *
+         * @param hash hash of a child not in the heap
+         */
+        private void add(long hash) {
+            if (2 * (n_used + 1) > slot_hashes.length) {
+                Arrays.fill(slot_pos, FREE);
+                n_used = 0;
+                for (int k = 0; k < size; k++) {
+                    int i = find(hashes[k]);
+                    slot_hashes[i] = hashes[k];
+                    slot_pos[i] = k;
+                    n_used++;
+                }
+            }
+            int i = find(hash);
+            n_used += slot_pos[i] == FREE ? 1 : 0;
+            slot_hashes[i] = hash;
+            slot_pos[i] = size; // overwritten by the sift
+        }
+
+        private void place(int k, long key, long hash) {
+            keys[k] = key;
+            hashes[k] = hash;
+            slot_pos[find(hash)] = k;
+        }
+
+        private void sift_up(int k, long key, long hash) {
+            while (k > 0 && keys[(k - 1) / 2] < key) {
+                place(k, keys[(k - 1) / 2], hashes[(k - 1) / 2]);
+                k = (k - 1) / 2;
+            }
+            place(k, key, hash);
+        }
+
+        private void sift_down(int k, long key, long hash) {
+            while (2 * k + 1 < size) {
+                int c = 2 * k + 1;
+                if (c + 1 < size && keys[c + 1] > keys[c]) {
+                    c++;
+                }
+                if (keys[c] <= key) {
+                    break;
+                }
+                place(k, keys[c], hashes[c]);
+                k = c;
+            }
+            place(k, key, hash);
+        }
+    }
+
+    /**
+     * Best children of a range of nodes of the beam, as packed keys: rank (bits 48-62), child lower bound (bits
+     * 32-47), node (bits 16-31) and src * n_stacks + dst (bits 0-15)
+     */
+    private class Expansion extends RecursiveTask<Candidates> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int level;
+        private final int width;
+        private final LowerBound bound = LowerBound.create(algo.config.lower_bound);
+        private final State state = root_state.copy(); // scratch state into which the nodes are unpacked
+
+        Expansion(int from, int to, int level, int width) {
+            this.from = from;
+            this.to = to;
+            this.level = level;
+            this.width = width;
+        }
+
+        @Override
+        protected Candidates compute() {
+            Candidates out = new Candidates((int) Math.min(width, (long) (to - from) * n_stacks * (n_stacks - 1)));
+            for (int i = from; i < to && !algo.stop; i++) {
+                if ((i - from) % CHECK_CYCLE == 0 && Time.get_nanos() - algo.deadline >= 0) {
+                    algo.stop = true;
+                    break;
+                }
+                expand(i, level, state, bound, out);
+            }
+            return out;
+        }
+    }
+
+    private final Algorithm algo;
+    private final State root_state;
+    private final int n_stacks;
+    private final int n_tiers;
+    private final State.Codec codec; // encoding of the nodes of the beam, which takes a fraction of the size of a State
+
+    private long[] beam; // beam[i * codec.n_longs...]: packed state of the i-th node of the current level
+    private Move[][] paths; // paths[i]: relocations leading to the i-th node of the current level
+    private int beam_size;
+
+    /**
+     * Create a beam search
+     *
+     * @param algo       shared search data
+     * @param root_state root state, which is not modified
+     */
+    public Beam(Algorithm algo, State root_state) {
+        this.algo = algo;
+        this.root_state = root_state;
+        this.n_stacks = root_state.n_stacks;
+        this.n_tiers = root_state.n_tiers;
+        this.codec = new State.Codec(n_stacks, n_tiers, root_state.n_blocks, algo.max_prio, algo.best_ub); // every node is shorter than the initial solution
+    }
+
+    /**
+     * Run passes of growing width until the search is stopped
+     *
+     * @return true if the search is over, false if the width limit is reached
+     */
+    public boolean search() {
+        for (int width = Math.min(algo.config.beam_width, MAX_WIDTH); ; width = Math.min(2 * width, MAX_WIDTH)) {
+            if (pass(width)) {
+                return true;
+            }
+            algo.debug_info("widen");
+            if (width == MAX_WIDTH) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Run a pass of the beam search
+     *
+     * @param width number of nodes kept per level
+     * @return true if the search should stop
+     */
+    private boolean pass(int width) {
+        beam = new long[codec.n_longs];
+        codec.pack(root_state, beam, 0);
+        paths = new Move[][]{new Move[0]};
+        beam_size = 1;
+        State child_state = root_state.copy(); // scratch state into which the parents of the children are unpacked
+
+        for (int level = 0; beam_size > 0; level++) {
+            /*
+             * Children of all nodes, in parallel if there is a pool
+             */
+            ArrayList<Expansion> tasks = new ArrayList<>();
+            int n_tasks = algo.pool != null ? Math.min(beam_size, 4 * algo.pool.getParallelism()) : 1;
+            for (int t = 0; t < n_tasks; t++) {
+                tasks.add(new Expansion(t * beam_size / n_tasks, (t + 1) * beam_size / n_tasks, level, width));
+            }
+            if (algo.pool != null) {
+                for (Expansion task : tasks) {
+                    algo.pool.execute(task);
+                }
+            }
+            Candidates[] selected = new Candidates[n_tasks];
+            int n_keys = 0;
+            for (int t = 0; t < n_tasks; t++) {
+                selected[t] = algo.pool != null ? tasks.get(t).join() : tasks.get(t).invoke();
+                n_keys += selected[t].size;
+                algo.merge_bound(tasks.get(t).bound, null);
+            }
+            if (algo.stop) {
+                return true;
+            }
+            long[] keys = new long[n_keys];
+            n_keys = 0;
+            for (Candidates out : selected) {
+                System.arraycopy(out.keys, 0, keys, n_keys, out.size);
+                n_keys += out.size;
+            }
+
+            /*
+             * Best distinct children, among the best distinct ones of each task
+             */
+            Arrays.sort(keys);
+            Move[][] next_paths = new Move[Math.min(width, keys.length)][];
+            long[] next_beam = new long[next_paths.length * codec.n_longs];
+            int next_size = 0;
+            long[] seen = new long[Integer.highestOneBit(Math.max(1, next_paths.length)) * 4]; // open addressing on hashes, 0 is free
+            boolean seen_zero = false; // the hash 0 has been seen
+            for (int j = 0; j < keys.length && next_size < next_paths.length; j++) {
+                if (level + 1 + (int) (keys[j] >>> 32 & 0xffff) >= algo.best_ub) {
+                    continue; // the best solution has improved since the child was generated
+                }
+                int i = (int) (keys[j] >>> 16 & 0xffff);
+                int src = (int) (keys[j] & 0xffff) / n_stacks;
+                int dst = (int) (keys[j] & 0xffff) % n_stacks;
+
+                codec.unpack(beam, i * codec.n_longs, child_state);
+                Move move = algo.move(child_state.p[src * child_state.stride + child_state.h[src]], src, dst);
+                child_state.relocate(src, dst, level + 1);
+                while (child_state.is_retrievable()) {
+                    child_state.retrieve(level + 1);
+                }
+                long hash = child_state.hash();
+                boolean fresh;
+                if (hash == 0) {
+                    fresh = !seen_zero;
+                    seen_zero = true;
+                } else {
+                    int k = (int) Zobrist.mix(hash) & (seen.length - 1);
+                    while (seen[k] != 0 && seen[k] != hash) {
+                        k = (k + 1) & (seen.length - 1);
+                    }
+                    fresh = seen[k] == 0;
+                    seen[k] = hash;
+                }
+                if (fresh) {
+                    codec.pack(child_state, next_beam, next_size * codec.n_longs);
+                    next_paths[next_size] = Arrays.copyOf(paths[i], level + 1);
+                    next_paths[next_size][level] = move;
+                    next_size++;
+                }
+            }
+            beam = next_beam;
+            paths = next_paths;
+            beam_size = next_size;
+        }
+        return algo.stop;
+    }
+
+    /**
+     * Evaluate the children of a node of the beam, recording the solutions that improve the best one
+     *
+     * @param i     node
+     * @param level number of relocations leading to the node
+     * @param state scratch state, overwritten by the node
+     * @param bound lower bound
+     * @param out   selection of the packed keys of the children
+     */
+    private void expand(int i, int level, State state, LowerBound bound, Candidates out) {
+        algo.n_nodes.increment();
+        codec.unpack(beam, i * codec.n_longs, state);
+        int stride = state.stride;
+
+        for (int sn = 0; sn < n_stacks; sn++) {
+            if (state.h[sn] == 0) {
+                continue;
+            }
+            int pn = state.p[sn * stride + state.h[sn]];
+            if (level > 0 && state.l[sn * stride + state.h[sn]] == level) {
+                continue; // two relocations of the same block in a row can be merged
+            }
+
+            boolean first_empty = true;
+            for (int dn = 0; dn < n_stacks; dn++) {
+                if (dn == sn || state.h[dn] == n_tiers) {
+                    continue;
+                }
+                if (state.h[dn] == 0) {
+                    if (first_empty) {
+                        first_empty = false;
+                    } else {
+                        continue; // choose the leftmost empty stack
+                    }
+                }
+
+                int mark = state.mark();
+                state.apply_relocate(sn, dn, level + 1);
+                while (state.is_retrievable()) {
+                    state.apply_retrieve(level + 1);
+                }
+
+                if (state.n_blocks == 0) {
+                    if (level + 1 < algo.best_ub) {
+                        Move[] sol = Arrays.copyOf(paths[i], level + 1);
+                        sol[level] = algo.move(pn, sn, dn);
+                        algo.improve(level + 1, sol, "goal");
+                    }
+                    state.undo(mark);
+                    continue;
+                }
+
+                int child_lb = bound.eval(state);
+                if (level + 1 + child_lb >= algo.best_ub) {
+                    state.undo(mark);
+                    continue;
+                }
+
+                /*
+                 * Rank by the better heuristic solution, which is recorded if it improves the best one
+                 */
+                algo.n_probe.increment();
+                int len_jzw = UpperBound.jzw(state.copy(), null, level + 1, Integer.MAX_VALUE);
+                int len_sm2 = UpperBound.sm2(state.copy(), null, level + 1, Integer.MAX_VALUE);
+                int len = Math.min(len_jzw, len_sm2);
+                if (len < algo.best_ub) {
+                    Move[] sol = Arrays.copyOf(paths[i], len);
+                    sol[level] = algo.move(pn, sn, dn);
+                    if (len_jzw <= len_sm2) {
+                        UpperBound.jzw(state.copy(), sol, level + 1, len);
+                    } else {
+                        UpperBound.sm2(state.copy(), sol, level + 1, len);
+                    }
+                    if (algo.improve(len, sol, "update")) {
+                        state.undo(mark);
+                        return;
+                    }
+                }
+                long hash = state.hash();
+                state.undo(mark);
+
+                int rank = Math.min(len, 0x7fff);
+                out.offer((long) rank << 48 | (long) child_lb << 32 | (long) i << 16 | sn * n_stacks + dn, hash);
+            }
+        }
+    }
+}
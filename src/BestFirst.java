@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Best-first (A*) search ordered by number of relocations plus lower bound
+ *
+ * A node is stored as its parent and its relocation only, 6 bytes, plus an 8-byte key in the open list. A node is
+ * rebuilt by replaying the relocations from the deepest ancestor shared with the previously expanded node, so that
+ * the dominance rules see the same history as in the depth-first search. As the rules depend on the path, nodes
+ * reached by different paths are not merged.
+ */
+public class BestFirst {
+    private static final int BYTES_PER_NODE = 14; // parent, relocation and open list key
+
+    private final Algorithm algo;
+    private final Worker worker; // worker holding the state, expanding nodes with the dominance rules
+    private final int max_nodes; // memory cap on the number of nodes
+
+    private int[] parent; // parent[i]: parent of node i, -1 for the root
+    private char[] code; // code[i]: src * n_stacks + dst of the relocation leading to node i
+    private int n_nodes; // number of nodes created
+
+    /*
+     * Open list as a binary heap of packed keys: f (bits 48-62), 0xffff - g (bits 32-47) and node (bits 0-31),
+     * so that ties on f are broken in favor of deeper nodes and then of nodes created earlier
+     */
+    private long[] heap;
+    private int heap_size;
+
+    /*
+     * Node whose state is held by the worker, as the nodes from the root and the marks to undo them
+     */
+    private final int[] curr_path; // curr_path[k]: node at level k
+    private final int[] next_path; // next_path[k]: node at level k of the node to be expanded
+    private final int[] curr_mark; // curr_mark[k]: mark before the relocation at level k
+    private int curr_level;
+
+    /**
+     * Create a best-first search from the root state held by a worker
+     *
+     * @param algo      shared search data
+     * @param worker    worker holding the root state, which is restored when the search returns
+     * @param max_depth maximum number of relocations
+     * @param size_mb   memory cap in megabytes
+     */
+    public BestFirst(Algorithm algo, Worker worker, int max_depth, int size_mb) {
+        this.algo = algo;
+        this.worker = worker;
+        this.max_nodes = (int) Math.min(((long) size_mb << 20) / BYTES_PER_NODE, Integer.MAX_VALUE - 8);
+        this.parent = new int[1024];
+        this.code = new char[1024];
+        this.heap = new long[1024];
+        this.curr_path = new int[max_depth + 1];
+        this.curr_mark = new int[max_depth + 1];
+        this.next_path = new int[max_depth + 1];
+    }
+
+    /**
+     * Search until the best solution is proved optimal, the search is stopped or the memory cap is hit
+     *
+     * @return true if the search is over, false if the memory cap is hit, in which case the best lower bound holds
+     * the smallest f of the open list
+     */
+    public boolean search() {
+        n_nodes = 0;
+        heap_size = 0;
+        curr_level = 0;
+        add(-1, 0);
+        push((long) algo.best_lb << 48 | 0xffffL << 32);
+
+        try {
+            while (heap_size > 0) {
+                long key = pop();
+                int f = (int) (key >>> 48);
+                int g = 0xffff - (int) (key >>> 32 & 0xffff);
+                int node = (int) key;
+
+                /*
+                 * Every solution goes through a node of the open list
+                 */
+                if (f >= algo.best_ub) {
+                    algo.improve_lb(algo.best_ub, "deepen");
+                    return true;
+                }
+                if (f > algo.best_lb && algo.improve_lb(f, "deepen")) {
+                    return true;
+                }
+
+                if (worker.tick()) {
+                    return true;
+                }
+
+                /*
+                 * Rebuild the node and expand it
+                 */
+                replay(node, g);
+                int n_branches = worker.expand(g, algo.best_ub - 1, false);
+                if (n_branches < 0) {
+                    return true;
+                }
+                if (n_nodes + n_branches > max_nodes) {
+                    algo.debug_info("memory");
+                    return false;
+                }
+                for (int i = 0; i < n_branches; i++) {
+                    long branch = worker.branch(g, i);
+                    int child_f = g + 1 + (int) (branch >>> 48);
+                    int child = add(node, (int) (branch & 0xffff));
+                    push((long) child_f << 48 | (long) (0xffff - g - 1) << 32 | child);
+                }
+            }
+
+            /*
+             * The open list is exhausted: no solution is shorter than the best one
+             */
+            algo.improve_lb(algo.best_ub, "deepen");
+            return true;
+        } finally {
+            if (curr_level > 0) {
+                worker.ascend(curr_mark[0]);
+            }
+            curr_level = 0;
+            parent = new int[1024];
+            code = new char[1024];
+            heap = new long[1024];
+        }
+    }
+
+    /**
+     * Bring the state of the worker to a node
+     *
+     * @param node  node
+     * @param level number of relocations leading to the node
+     */
+    private void replay(int node, int level) {
+        /*
+         * Find the deepest common ancestor with the current node
+         */
+        int[] target = next_path;
+        for (int k = level, i = node; k >= 0; k--, i = parent[i]) {
+            target[k] = i;
+        }
+        int common = 0;
+        while (common < Math.min(level, curr_level) && target[common + 1] == curr_path[common + 1]) {
+            common++;
+        }
+
+        /*
+         * Undo down to the common ancestor and redo up to the node
+         */
+        if (common < curr_level) {
+            worker.ascend(curr_mark[common]);
+        }
+        for (int k = common; k < level; k++) {
+            worker.snapshot(k);
+            curr_mark[k] = worker.descend(k, code[target[k + 1]]);
+            curr_path[k + 1] = target[k + 1];
+        }
+        curr_path[0] = target[0];
+        curr_level = level;
+    }
+
+    private int add(int p, int c) {
+        if (n_nodes == parent.length) {
+            int size = (int) Math.min(2L * parent.length, max_nodes + 1L);
+            parent = Arrays.copyOf(parent, size);
+            code = Arrays.copyOf(code, size);
+        }
+        parent[n_nodes] = p;
+        code[n_nodes] = (char) c;
+        return n_nodes++;
+    }
+
+    private void push(long key) {
+        if (heap_size == heap.length) {
+            heap = Arrays.copyOf(heap, (int) Math.min(2L * heap.length, max_nodes + 1L));
+        }
+        int i = heap_size++;
+        while (i > 0 && heap[(i - 1) / 2] > key) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = key;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long key = heap[--heap_size];
+        int i = 0;
+        while (2 * i + 1 < heap_size) {
+            int c = 2 * i + 1;
+            if (c + 1 < heap_size && heap[c + 1] < heap[c]) {
+                c++;
+            }
+            if (heap[c] >= key) {
+                break;
+            }
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = key;
+        return top;
+    }
+}
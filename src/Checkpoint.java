@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Progress of a search saved to a file, from which Algorithm.resume continues, or a warm start built by
+ * Algorithm.resolve from the solution of a similar instance
+ *
+ * Layout, big-endian: the magic "CKPT" and the version as ints, the size of the instance as four ints and the hash of
+ * its root configuration as a long, the bounds as four ints, the moves of the best solution as three ints each, the
+ * times as doubles, the counters as longs, and the frontier as an int length and a long per level.
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x434b5054; // "CKPT"
+    private static final int VERSION = 1;
+
+    public int n_stacks; // number of stacks of the instance
+    public int n_tiers; // number of tiers of the instance
+    public int n_blocks; // number of blocks of the instance
+    public int max_prio; // maximum priority of the instance
+    public long hash; // hash of the root configuration, i.e., after the initial retrievals
+    public int init_lb; // initial lower bound
+    public int init_ub; // initial upper bound
+    public int best_lb; // depth of the iteration in progress
+    public int best_ub; // length of the best solution
+    public Move[] best_sol; // best solution of best_ub moves
+    public double time_to_best_lb; // time to reach best_lb in seconds
+    public double time_to_best_ub; // time to find best_sol in seconds
+    public double time_used; // time spent in seconds
+    public long n_nodes; // number of nodes explored
+    public long n_probe; // number of nodes probed
+    public long n_tt_hits; // number of transposition table hits
+    public long n_tt_misses; // number of transposition table misses
+    public long[] frontier; // frontier[k]: key of the branch searched at level k, empty at the start of an iteration
+
+    /**
+     * Check if the checkpoint was saved for an instance
+     *
+     * @param inst instance
+     * @return true if the instance has the size and the root configuration of the checkpoint
+     */
+    public boolean matches(Instance inst) {
+        if (n_stacks != inst.n_stacks || n_tiers != inst.n_tiers || n_blocks != inst.n_blocks || max_prio != inst.max_prio) {
+            return false;
+        }
+        State root_state = State.initialize(inst, new Zobrist(n_stacks, n_tiers, max_prio));
+        while (root_state.is_retrievable()) {
+            root_state.retrieve(0);
+        }
+        return hash == root_state.hash();
+    }
+
+    /**
+     * Write the checkpoint to a temporary file and move it over the previous one, so that the file is always complete
+     *
+     * @param path checkpoint file name
+     * @throws IOException file cannot be written
+     */
+    public void write(String path) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4 * 10 + 8 + 12 * best_ub + 8 * 3 + 8 * 4 + 4 + 8 * frontier.length);
+        buf.putInt(MAGIC).putInt(VERSION);
+        buf.putInt(n_stacks).putInt(n_tiers).putInt(n_blocks).putInt(max_prio).putLong(hash);
+        buf.putInt(init_lb).putInt(init_ub).putInt(best_lb).putInt(best_ub);
+        for (int i = 0; i < best_ub; i++) {
+            buf.putInt(best_sol[i].p).putInt(best_sol[i].s).putInt(best_sol[i].d);
+        }
+        buf.putDouble(time_to_best_lb).putDouble(time_to_best_ub).putDouble(time_used);
+        buf.putLong(n_nodes).putLong(n_probe).putLong(n_tt_hits).putLong(n_tt_misses);
+        buf.putInt(frontier.length);
+        for (long key : frontier) {
+            buf.putLong(key);
+        }
+        buf.flip();
+
+        Path file = Paths.get(path);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a checkpoint
+     *
+     * @param path checkpoint file name
+     * @return checkpoint
+     * @throws IOException file cannot be read or is not a checkpoint
+     */
+    public static Checkpoint read(String path) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        if (buf.limit() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("not a checkpoint of version " + VERSION + ": " + path);
+        }
+        Checkpoint cp = new Checkpoint();
+        try {
+            cp.n_stacks = buf.getInt();
+            cp.n_tiers = buf.getInt();
+            cp.n_blocks = buf.getInt();
+            cp.max_prio = buf.getInt();
+            cp.hash = buf.getLong();
+            cp.init_lb = buf.getInt();
+            cp.init_ub = buf.getInt();
+            cp.best_lb = buf.getInt();
+            cp.best_ub = buf.getInt();
+            cp.best_sol = new Move[cp.best_ub];
+            for (int i = 0; i < cp.best_ub; i++) {
+                cp.best_sol[i] = new Move(buf.getInt(), buf.getInt(), buf.getInt());
+            }
+            cp.time_to_best_lb = buf.getDouble();
+            cp.time_to_best_ub = buf.getDouble();
+            cp.time_used = buf.getDouble();
+            cp.n_nodes = buf.getLong();
+            cp.n_probe = buf.getLong();
+            cp.n_tt_hits = buf.getLong();
+            cp.n_tt_misses = buf.getLong();
+            cp.frontier = new long[buf.getInt()];
+            for (int k = 0; k < cp.frontier.length; k++) {
+                cp.frontier[k] = buf.getLong();
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated checkpoint: " + path);
+        }
+        return cp;
+    }
+}
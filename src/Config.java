@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+public class Config {
+    public boolean verbose = true; // print progress to standard output
+    public int progress_interval_ms = 1000; // time between two progress reports while searching
+    public int check_interval_ms = 10; // target time between two checks of the time limit by a worker
+    public Algorithm.Engine engine = Algorithm.Engine.IDBB; // search engine
+    public int astar_size_mb = 256; // memory cap of the nodes of the best-first engine in megabytes
+    public int beam_width = 16; // width of the first pass of the beam engine, doubled after each pass
+    public Listener listener = null; // receives the progress of the search, or null
+    public int n_threads = 1; // number of threads searching in parallel, 1 for a sequential search
+    public int split_depth = 2; // levels above which subtrees are handed over to other threads
+    public String lower_bound = "ts"; // comma-separated lower bounds combined by maximum, see LowerBound.create
+    public int tt_size_mb = 0; // memory cap of the transposition table in megabytes, 0 to disable it
+    public TranspositionTable.Policy tt_policy = TranspositionTable.Policy.TWO_TIER; // replacement policy of the transposition table
+    public boolean deterministic = true; // run the probes in the searching threads, so that sequential runs are reproducible
+    public int probe_threads = 1; // helper threads running the probes when not deterministic
+    public int probe_queue = 64; // probes waiting for a helper thread, beyond which the searching thread runs them
+    public int probe_cache_mb = 16; // memory cap of the cache of heuristic results in megabytes, 0 to disable it
+    public String checkpoint_file = null; // file to which the progress is saved for Algorithm.resume, or null
+    public int checkpoint_interval_ms = 60000; // time between two checkpoints, another one is written when the time limit is hit
+}
@@ -18,6 +18,8 @@
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
 import java.util.Scanner;
 
 public class Instance {
@@ -66,6 +68,153 @@ public class Instance {
         }
     }
 
+    /**
+     * Read an instance in the binary format of write_instance
+     *
+     * @param buf buffer positioned at the instance, e.g., a slice of a mapped file, whose position is advanced
+     * @return created instance
+     */
+    public static Instance read_instance(ByteBuffer buf) {
+        Instance inst = new Instance(buf.getInt(), buf.getInt());
+        inst.n_blocks = buf.getInt();
+        int width = buf.getInt();
+
+        for (int s = 0; s < inst.n_stacks; s++) {
+            inst.h[s] = buf.getChar();
+        }
+        inst.max_prio = 0;
+        for (int s = 0; s < inst.n_stacks; s++) {
+            for (int t = 1; t <= inst.h[s]; t++) {
+                inst.p[s][t] = width == 1 ? buf.get() & 0xff : width == 2 ? buf.getChar() : buf.getInt();
+                inst.max_prio = Math.max(inst.max_prio, inst.p[s][t]);
+            }
+        }
+
+        return inst;
+    }
+
+    /**
+     * Generate a random instance with distinct priorities
+     *
+     * @param n_stacks number of stacks
+     * @param n_tiers  number of tiers
+     * @param n_blocks number of blocks, at most n_stacks * n_tiers - n_tiers + 1 so that every block can be retrieved
+     * @param seed     random seed
+     * @return generated instance
+     */
+    public static Instance generate(int n_stacks, int n_tiers, int n_blocks, long seed) {
+        return generate(n_stacks, n_tiers, n_blocks, n_blocks, seed);
+    }
+
+    /**
+     * Generate a random instance
+     *
+     * The blocks are split into n_prios groups of sizes differing by at most one, and each block is put on top of a
+     * stack chosen uniformly among the stacks that are not full. The instance only depends on the arguments.
+     *
+     * @param n_stacks number of stacks
+     * @param n_tiers  number of tiers
+     * @param n_blocks number of blocks, at most n_stacks * n_tiers - n_tiers + 1 so that every block can be retrieved
+     * @param n_prios  number of distinct priorities, n_blocks for distinct priorities
+     * @param seed     random seed
+     * @return generated instance
+     */
+    public static Instance generate(int n_stacks, int n_tiers, int n_blocks, int n_prios, long seed) {
+        if (n_blocks > n_stacks * n_tiers - n_tiers + 1) {
+            throw new IllegalArgumentException("too many blocks for " + n_stacks + " stacks and " + n_tiers + " tiers");
+        }
+        if (n_prios < 1 || n_prios > n_blocks) {
+            throw new IllegalArgumentException("number of priorities must be between 1 and the number of blocks");
+        }
+
+        Random rnd = new Random(seed);
+        Instance inst = new Instance(n_stacks, n_tiers);
+        inst.n_blocks = n_blocks;
+        inst.max_prio = n_prios;
+
+        int[] prio = new int[n_blocks];
+        for (int i = 0; i < n_blocks; i++) {
+            int j = rnd.nextInt(i + 1);
+            prio[i] = prio[j];
+            prio[j] = i % n_prios + 1;
+        }
+        for (int i = 0; i < n_blocks; i++) {
+            int s;
+            do {
+                s = rnd.nextInt(n_stacks);
+            } while (inst.h[s] == n_tiers);
+            inst.p[s][++inst.h[s]] = prio[i];
+        }
+
+        return inst;
+    }
+
+    /**
+     * Number of blocks filling a given fraction of a bay, capped so that every block can be retrieved
+     *
+     * @param n_stacks number of stacks
+     * @param n_tiers  number of tiers
+     * @param fill     fraction of slots occupied
+     * @return number of blocks
+     */
+    public static int fill_blocks(int n_stacks, int n_tiers, double fill) {
+        return (int) Math.min(Math.round(fill * n_stacks * n_tiers), n_stacks * n_tiers - n_tiers + 1);
+    }
+
+    /**
+     * Write the instance in the format of read_instance
+     *
+     * @param ps print stream
+     */
+    public void write_instance(PrintStream ps) {
+        ps.printf("%d %d %d\n", n_stacks, n_tiers, n_blocks);
+        for (int s = 0; s < n_stacks; s++) {
+            ps.print(h[s]);
+            for (int t = 1; t <= h[s]; t++) {
+                ps.printf(" %d", p[s][t]);
+            }
+            ps.print("\n");
+        }
+    }
+
+    /**
+     * Get the number of bytes written by write_instance(ByteBuffer)
+     *
+     * @return size in bytes
+     */
+    public int binary_size() {
+        return 16 + 2 * n_stacks + n_blocks * prio_width();
+    }
+
+    private int prio_width() {
+        return max_prio <= 0xff ? 1 : max_prio <= 0xffff ? 2 : 4;
+    }
+
+    /**
+     * Write the instance in a binary format: number of stacks, tiers and blocks and width of a priority as ints, the
+     * heights as chars, then the priorities of each stack from bottom to top on 1, 2 or 4 bytes
+     *
+     * @param buf buffer with binary_size() bytes remaining, whose position is advanced
+     */
+    public void write_instance(ByteBuffer buf) {
+        int width = prio_width();
+        buf.putInt(n_stacks).putInt(n_tiers).putInt(n_blocks).putInt(width);
+        for (int s = 0; s < n_stacks; s++) {
+            buf.putChar((char) h[s]);
+        }
+        for (int s = 0; s < n_stacks; s++) {
+            for (int t = 1; t <= h[s]; t++) {
+                if (width == 1) {
+                    buf.put((byte) p[s][t]);
+                } else if (width == 2) {
+                    buf.putChar((char) p[s][t]);
+                } else {
+                    buf.putInt(p[s][t]);
+                }
+            }
+        }
+    }
+
     /**
      * Print the instance
      *
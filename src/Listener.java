@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+public interface Listener {
+
+    /**
+     * Receive the progress of a search
+     *
+     * Statuses are "start" and "end" of the search, "deepen" when the lower bound is raised, "goal" and "update" when
+     * a better solution is found by the search or by probing, and "running", "memory" or "widen" for periodic and
+     * engine-specific progress. The call is made by the thread that made the progress while the solver is locked, so
+     * it should return quickly; Algorithm.cancel may be called from it.
+     *
+     * @param status status of the progress
+     * @param report snapshot of the bounds, best solution and counters, which the listener may keep
+     */
+    void on_progress(String status, Report report);
+}
@@ -15,7 +15,237 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-public class LowerBound {
+public abstract class LowerBound {
+    public long n_evals; // number of evaluations
+    public long n_prunes; // number of evaluations that alone were enough to prune a node
+    public long eval_nanos; // total time spent in evaluations in nanoseconds
+
+    private int last; // value of the last evaluation
+
+    /**
+     * Get the name of the lower bound
+     *
+     * @return name used to select the lower bound
+     */
+    public abstract String name();
+
+    /**
+     * Compute the lower bound
+     *
+     * @param state the state, which may be changed in place if it is restored before returning
+     * @return lower bound on the number of remaining relocations
+     */
+    protected abstract int compute(State state);
+
+    /**
+     * Evaluate the lower bound and record its cost
+     *
+     * @param state the state
+     * @return lower bound on the number of remaining relocations
+     */
+    public final int eval(State state) {
+        long start = System.nanoTime();
+        last = compute(state);
+        eval_nanos += System.nanoTime() - start;
+        n_evals++;
+        return last;
+    }
+
+    /**
+     * Record a node pruned by exceeding a limit on the remaining relocations
+     *
+     * @param limit largest number of remaining relocations allowed at the node
+     */
+    public void count_prune(int limit) {
+        if (last > limit) {
+            n_prunes++;
+        }
+    }
+
+    /**
+     * Add the statistics of another lower bound of the same kind and reset them there
+     *
+     * @param other lower bound created from the same specification
+     */
+    public void merge(LowerBound other) {
+        n_evals += other.n_evals;
+        n_prunes += other.n_prunes;
+        eval_nanos += other.eval_nanos;
+        other.n_evals = 0;
+        other.n_prunes = 0;
+        other.eval_nanos = 0;
+    }
+
+    /**
+     * Copy the lower bound with its statistics
+     *
+     * @return lower bound of the same kind, whose statistics are those of this one so far
+     */
+    public LowerBound copy() {
+        LowerBound copy = create(name());
+        copy.copy_stats(this);
+        return copy;
+    }
+
+    /**
+     * Overwrite the statistics with those of another lower bound of the same kind
+     *
+     * @param other lower bound created from the same specification
+     */
+    protected void copy_stats(LowerBound other) {
+        n_evals = other.n_evals;
+        n_prunes = other.n_prunes;
+        eval_nanos = other.eval_nanos;
+    }
+
+    /**
+     * Create a lower bound from its specification
+     *
+     * @param spec comma-separated names among "ts" and "la", combined by taking the maximum
+     * @return lower bound
+     */
+    public static LowerBound create(String spec) {
+        String[] names = spec.split(",");
+        if (names.length > 1) {
+            LowerBound[] parts = new LowerBound[names.length];
+            for (int i = 0; i < names.length; i++) {
+                parts[i] = create(names[i]);
+            }
+            return new Max(parts);
+        }
+        switch (spec.trim()) {
+            case "ts":
+                return new TS();
+            case "la":
+                return new LookAhead();
+            default:
+                throw new IllegalArgumentException("unknown lower bound: " + spec);
+        }
+    }
+
+    /**
+     * LB-TS: badly-placed blocks plus blocking layers that force an extra relocation each
+     */
+    public static class TS extends LowerBound {
+        @Override
+        public String name() {
+            return "ts";
+        }
+
+        @Override
+        protected int compute(State state) {
+            return lb_ts(state);
+        }
+    }
+
+    /**
+     * One-step look-ahead over LB-TS: the target block is not retrievable, so any solution starts with one of the
+     * relocations, after which LB-TS applies to the resulting state
+     */
+    public static class LookAhead extends LowerBound {
+        @Override
+        public String name() {
+            return "la";
+        }
+
+        @Override
+        protected int compute(State state) {
+            if (state.n_blocks == 0) {
+                return 0;
+            }
+
+            int n_stacks = state.n_stacks;
+            int n_tiers = state.n_tiers;
+            int[] h = state.h;
+
+            int mark = state.mark();
+            while (state.is_retrievable()) {
+                state.apply_retrieve(0);
+            }
+            if (state.n_blocks == 0) {
+                state.undo(mark);
+                return 0;
+            }
+
+            /*
+             * A relocation fixes at most one badly-placed block, so no child can do better than n_bad
+             */
+            int floor = state.n_bad;
+            int best = Integer.MAX_VALUE;
+            for (int s = 0; s < n_stacks && best > floor; s++) {
+                if (h[s] == 0) {
+                    continue;
+                }
+                for (int d = 0; d < n_stacks && best > floor; d++) {
+                    if (d == s || h[d] == n_tiers) {
+                        continue;
+                    }
+                    int child_mark = state.mark();
+                    state.apply_relocate(s, d, 0);
+                    while (state.is_retrievable()) {
+                        state.apply_retrieve(0);
+                    }
+                    best = Math.min(best, 1 + lb_ts(state));
+                    state.undo(child_mark);
+                }
+            }
+            state.undo(mark);
+            return best;
+        }
+    }
+
+    /**
+     * Maximum of several lower bounds, each of which keeps its own statistics
+     */
+    public static class Max extends LowerBound {
+        public final LowerBound[] parts;
+
+        public Max(LowerBound[] parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public String name() {
+            StringBuilder sb = new StringBuilder();
+            for (LowerBound part : parts) {
+                sb.append(sb.length() == 0 ? "" : ",").append(part.name());
+            }
+            return sb.toString();
+        }
+
+        @Override
+        protected int compute(State state) {
+            int lb = 0;
+            for (LowerBound part : parts) {
+                lb = Math.max(lb, part.eval(state));
+            }
+            return lb;
+        }
+
+        @Override
+        public void count_prune(int limit) {
+            super.count_prune(limit);
+            for (LowerBound part : parts) {
+                part.count_prune(limit);
+            }
+        }
+
+        @Override
+        public void merge(LowerBound other) {
+            super.merge(other);
+            for (int i = 0; i < parts.length; i++) {
+                parts[i].merge(((Max) other).parts[i]);
+            }
+        }
+
+        @Override
+        protected void copy_stats(LowerBound other) {
+            super.copy_stats(other);
+            for (int i = 0; i < parts.length; i++) {
+                parts[i].copy_stats(((Max) other).parts[i]);
+            }
+        }
+    }
 
     /**
      * Compute the value of LB-TS
@@ -27,34 +257,62 @@ public class LowerBound {
         int n_stacks = state.n_stacks; // number of stacks
         int n_tiers = state.n_tiers; // number of tiers
 
-        int[][] p = state.p; // p[s][t]: priority
-        int[][] q = state.q; // q[s][t]: quality, i.e., smallest among p[s][1...h[s]]
-        int[][] b = state.b; // b[s][t]: badness, i.e., number of consecutive badly-placed blocks
+        int stride = state.stride; // distance between two consecutive stacks in a slot array
+
+        int[] p = state.p; // p[s * stride + t]: priority
+        int[] q = state.q; // q[s * stride + t]: quality, i.e., smallest among priorities in slots (s, 1...t)
+        int[] b = state.b; // b[s * stride + t]: badness, i.e., number of consecutive badly-placed blocks
 
         int k = 0; // number of blocking layers identified
 
-        int[] h = state.h.clone(); // initialize h
+        int[] h = state.work; // scratch copy of h
         int lowest = Integer.MAX_VALUE; // lowest = min{h[s] | s=1,...,S}
         for (int s = 0; s < n_stacks; s++) {
+            h[s] = state.h[s];
             lowest = Math.min(lowest, h[s]);
         }
 
+        int q_min = 0; // q_min = min{q[s][h[s]] | s=1,...,S}
+        int q_max = 0; // q_max = max{q[s][h[s]] | s=1,...,S, h[s] < n_tiers}
+        int first = 0; // stacks before first are known to satisfy both conditions
+        boolean rescan = true; // q_min and q_max have to be recomputed
+
         while (lowest > 0) {
-            int q_min = Integer.MAX_VALUE; // q_min = min{q[s][h[s]] | s=1,...,S}
-            int q_max = 0; // q_max = max{q[s][h[s]] | s=1,...,S, h[s] < n_tiers}
-            for (int s = 0; s < n_stacks; s++) {
-                q_min = Math.min(q_min, q[s][h[s]]);
-                if (h[s] < n_tiers) {
-                    q_max = Math.max(q_max, q[s][h[s]]);
+            if (rescan) {
+                q_min = Integer.MAX_VALUE;
+                q_max = 0;
+                for (int s = 0; s < n_stacks; s++) {
+                    q_min = Math.min(q_min, q[s * stride + h[s]]);
+                    if (h[s] < n_tiers) {
+                        q_max = Math.max(q_max, q[s * stride + h[s]]);
+                    }
                 }
+                first = 0;
+                rescan = false;
             }
 
             boolean satisfied = true;
-            for (int s = 0; s < n_stacks; s++) {
-                if (p[s][h[s]] == q_min || (b[s][h[s]] > 0 && p[s][h[s]] <= q_max)) {
+            for (int s = first; s < n_stacks; s++) {
+                if (p[s * stride + h[s]] == q_min || (b[s * stride + h[s]] > 0 && p[s * stride + h[s]] <= q_max)) {
                     // One of the conditions is violated at stack s
+                    int q_old = q[s * stride + h[s]];
                     lowest = Math.min(lowest, --h[s]);
                     satisfied = false;
+
+                    /*
+                     * Only stack s changed and its quality cannot decrease, so q_max grows at most to the new quality
+                     * and q_min changes only if stack s attained it; if neither changes, the stacks before s still
+                     * satisfy both conditions
+                     */
+                    int q_new = q[s * stride + h[s]];
+                    if (q_old == q_min && q_new != q_min) {
+                        rescan = true;
+                    } else if (q_new > q_max) {
+                        q_max = q_new;
+                        first = 0;
+                    } else {
+                        first = s;
+                    }
                     break;
                 }
             }
@@ -64,6 +322,7 @@ public class LowerBound {
                 for (int s = 0; s < n_stacks; s++) {
                     lowest = Math.min(lowest, --h[s]);
                 }
+                rescan = true;
             }
         }
 
@@ -15,22 +15,157 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
 
-    public static void main(String[] args) throws FileNotFoundException {
-        String input = "data/test.txt";
-        int time_limit = 1800;
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("gen")) {
+            generate(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("convert")) {
+            convert(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("solve")) {
+            solve(args);
+            return;
+        }
 
-        Instance inst = Instance.read_instance(input);
+        solve(new String[]{"solve", "data/test.txt", "1800"});
+    }
+
+    /**
+     * Solve an instance file
+     *
+     * Usage: solve input time_limit [checkpoint], where the progress is saved to the checkpoint file if given, and the
+     * search resumes from it if it exists, e.g., when the same command is run again after the process was killed
+     *
+     * @param args command line arguments
+     * @throws IOException input or checkpoint cannot be read
+     */
+    private static void solve(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 4) {
+            System.err.println("usage: solve input time_limit [checkpoint]");
+            System.exit(1);
+        }
+        Instance inst = Instance.read_instance(args[1]);
+        double time_limit = Double.parseDouble(args[2]);
 
         inst.print_instance(System.out);
         System.out.flush();
 
-        Report report = new Algorithm().solve(inst, time_limit);
+        Config config = new Config();
+        config.checkpoint_file = args.length == 4 ? args[3] : null;
+        Algorithm algo = new Algorithm(config);
+        Report report = config.checkpoint_file != null && Files.exists(Paths.get(config.checkpoint_file)) ? algo.resume(inst, config.checkpoint_file, time_limit) : algo.solve(inst, time_limit);
 
+        if (report.checkpoint_error != null) {
+            System.err.println(report.checkpoint_error);
+        }
         Move.print_moves(System.out, report.best_sol, report.best_ub);
+        if (report.stats != null) {
+            report.stats.print(System.out);
+        }
         System.out.flush();
     }
+
+    /**
+     * Generate instance files
+     *
+     * Usage: gen n_stacks n_tiers fill n_prios seed count output_dir, where n_prios = 0 means distinct priorities;
+     * the files are named n_stacks-n_tiers-n_blocks-n_prios-seed.txt with seeds seed, seed + 1, ..., seed + count - 1
+     *
+     * @param args command line arguments
+     * @throws FileNotFoundException output directory does not exist
+     */
+    private static void generate(String[] args) throws FileNotFoundException {
+        if (args.length != 8) {
+            System.err.println("usage: gen n_stacks n_tiers fill n_prios seed count output_dir");
+            System.exit(1);
+        }
+        int n_stacks = Integer.parseInt(args[1]);
+        int n_tiers = Integer.parseInt(args[2]);
+        int n_blocks = Instance.fill_blocks(n_stacks, n_tiers, Double.parseDouble(args[3]));
+        int n_prios = Integer.parseInt(args[4]) == 0 ? n_blocks : Integer.parseInt(args[4]);
+        long seed = Long.parseLong(args[5]);
+        int count = Integer.parseInt(args[6]);
+
+        for (int i = 0; i < count; i++) {
+            Instance inst = Instance.generate(n_stacks, n_tiers, n_blocks, n_prios, seed + i);
+            String name = n_stacks + "-" + n_tiers + "-" + n_blocks + "-" + n_prios + "-" + (seed + i) + ".txt";
+            try (PrintStream ps = new PrintStream(new File(args[7], name))) {
+                inst.write_instance(ps);
+            }
+        }
+    }
+
+    /**
+     * Solve a batch of instance files
+     *
+     * Usage: batch input time_limit n_threads output, where input is a directory, a glob such as data/*.txt or a .bays
+     * file, and output is a .csv summary, a .jsonl or binary .sols file of SolutionWriter records with the solutions, or
+     * - for CSV on the standard output
+     *
+     * @param args command line arguments
+     * @throws IOException          input or output cannot be opened
+     * @throws InterruptedException interrupted while waiting for results
+     */
+    private static void batch(String[] args) throws IOException, InterruptedException {
+        if (args.length != 5) {
+            System.err.println("usage: batch input time_limit n_threads output");
+            System.exit(1);
+        }
+        int time_limit = Integer.parseInt(args[2]);
+        int n_threads = Integer.parseInt(args[3]);
+
+        Config config = new Config();
+        config.verbose = false;
+
+        try (PrintStream ps = args[4].equals("-") ? null : new PrintStream(new FileOutputStream(args[4]))) {
+            PrintStream out = ps != null ? ps : System.out;
+            SolutionWriter.Format format = args[4].endsWith(".jsonl") ? SolutionWriter.Format.JSONL : args[4].endsWith(".sols") ? SolutionWriter.Format.BINARY : null;
+            if (args[1].endsWith(".bays")) {
+                Batch.run(BayFile.open(args[1]), time_limit, n_threads, config, out, format);
+            } else {
+                Batch.run(Batch.list_instances(args[1]), time_limit, n_threads, config, out, format);
+            }
+        }
+    }
+
+    /**
+     * Convert instance files into a bay file
+     *
+     * Usage: convert input output, where input is a directory or a glob such as data/*.txt, and output is a .bays file
+     *
+     * @param args command line arguments
+     * @throws IOException input cannot be read or output cannot be written
+     */
+    private static void convert(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: convert input output");
+            System.exit(1);
+        }
+        List<String> names = new ArrayList<>();
+        List<Instance> insts = new ArrayList<>();
+        for (Path file : Batch.list_instances(args[1])) {
+            names.add(file.getFileName().toString());
+            insts.add(Instance.read_instance(file.toString()));
+        }
+        BayFile.write(args[2], names, insts);
+    }
 }
@@ -46,11 +46,11 @@ public class Move {
         if (len == Integer.MAX_VALUE) {
             ps.print("?\n");
         } else {
-            ps.print("[");
+            StringBuilder sb = new StringBuilder(16 * len + 2).append('[');
             for (int i = 0; i < len; i++) {
-                ps.printf("%s(%d: %d -> %d)", i == 0 ? "" : ", ", path[i].p, path[i].s, path[i].d);
+                sb.append(i == 0 ? "(" : ", (").append(path[i].p).append(": ").append(path[i].s).append(" -> ").append(path[i].d).append(')');
             }
-            ps.print("]\n");
+            ps.print(sb.append("]\n"));
         }
     }
 }
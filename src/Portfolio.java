@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Solver of many bays sharing a thread pool and one deadline
+ *
+ * The bays are solved in time slices by sequential solvers. The first slice of a bay is its share of the thread time
+ * left, so that a bay solved early hands the rest back to the later ones. Once every bay has had its first slice, the
+ * time left goes to the open bays in proportion to the gap between their bounds, largest gap first, and each slice
+ * resumes the search from the checkpoint where the previous one stopped.
+ */
+public class Portfolio {
+    private static final double MIN_SLICE = 0.05; // shortest slice in seconds, so that a slice does some search
+
+    /**
+     * Bay of a portfolio and the progress of its search
+     */
+    private static class Bay {
+        Instance inst; // instance
+        Report report; // report of the slices so far, or null before the first one
+        Checkpoint checkpoint; // checkpoint at the end of the last slice, or null
+        boolean done; // solved or infeasible
+        int gap = 1; // gap between the bounds after the last slice that ended, only used by the main thread
+    }
+
+    /**
+     * Solve instances until they are all solved or the deadline is hit
+     *
+     * @param insts      instances
+     * @param time_limit time limit for all the instances in seconds, accurate to the millisecond
+     * @param n_threads  number of instances solved at the same time
+     * @param config     solver configuration shared by all instances, which should be sequential and not verbose
+     * @return report per instance, or null if the instance has no solution; an instance without a slice before the
+     * deadline gets an unsolved report, see unsolved
+     * @throws InterruptedException interrupted while waiting for slices
+     */
+    public static Report[] solve(List<Instance> insts, double time_limit, int n_threads, Config config) throws InterruptedException {
+        long deadline = Time.get_nanos() + (long) (time_limit * 1e9);
+
+        Bay[] bays = new Bay[insts.size()];
+        ArrayDeque<Bay> fresh = new ArrayDeque<>(); // bays without a slice yet
+        List<Bay> open = new ArrayList<>(); // bays waiting for another slice
+        List<Bay> running = new ArrayList<>(); // bays whose slice is running
+        for (int i = 0; i < bays.length; i++) {
+            bays[i] = new Bay();
+            bays[i].inst = insts.get(i);
+            fresh.add(bays[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(n_threads);
+        try {
+            CompletionService<Bay> completion = new ExecutorCompletionService<>(executor);
+            while (true) {
+                /*
+                 * Hand out slices while threads are free
+                 */
+                while (running.size() < n_threads && (!fresh.isEmpty() || !open.isEmpty())) {
+                    double time_left = (deadline - Time.get_nanos()) * 1e-9;
+                    if (time_left < MIN_SLICE) {
+                        break;
+                    }
+                    double thread_time = time_left * n_threads;
+
+                    Bay next = !fresh.isEmpty() ? fresh.poll() : widest(open);
+                    double slice;
+                    if (next.report == null) {
+                        slice = thread_time / (fresh.size() + open.size() + running.size() + 1);
+                    } else {
+                        long total_gap = next.gap;
+                        for (Bay bay : open) {
+                            total_gap += bay.gap;
+                        }
+                        for (Bay bay : running) {
+                            total_gap += bay.gap; // gap after its previous slice, as its report is being written by the running one
+                        }
+                        slice = thread_time * next.gap / total_gap;
+                    }
+                    double time = Math.min(time_left, Math.max(MIN_SLICE, slice));
+                    completion.submit(() -> run(next, time, config));
+                    running.add(next);
+                }
+                if (running.isEmpty()) {
+                    break;
+                }
+
+                /*
+                 * Wait for a slice to end
+                 */
+                Bay ended;
+                try {
+                    ended = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                running.remove(ended);
+                if (!ended.done) {
+                    ended.gap = ended.report.best_ub - ended.report.best_lb;
+                    open.add(ended);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        /*
+         * Bays without a slice are not searched after the deadline, so that null still means no solution
+         */
+        Report[] reports = new Report[bays.length];
+        for (int i = 0; i < bays.length; i++) {
+            reports[i] = bays[i].report != null || bays[i].done ? bays[i].report : unsolved(bays[i].inst, config);
+        }
+        return reports;
+    }
+
+    /**
+     * Report a bay without a slice by its root lower bound alone, as the heuristics run by a solve could take long on
+     * many or large bays after the deadline
+     *
+     * @param inst   instance
+     * @param config solver configuration
+     * @return report without solution and with an upper bound of Integer.MAX_VALUE, unless the bay is cleared by
+     * retrievals alone
+     */
+    private static Report unsolved(Instance inst, Config config) {
+        State state = State.initialize(inst);
+        while (state.is_retrievable()) {
+            state.retrieve(0);
+        }
+        if (state.n_blocks == 0) {
+            return new Report(0, 0, 0, 0, null, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, null);
+        }
+        int lb = LowerBound.create(config.lower_bound).eval(state);
+        return new Report(lb, Integer.MAX_VALUE, lb, Integer.MAX_VALUE, null, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, null);
+    }
+
+    /**
+     * Take the bay with the largest gap between its bounds
+     *
+     * @param bays bays with a report, not empty
+     * @return the bay, removed from the list
+     */
+    private static Bay widest(List<Bay> bays) {
+        int k = 0;
+        for (int i = 1; i < bays.size(); i++) {
+            if (bays.get(i).gap > bays.get(k).gap) {
+                k = i;
+            }
+        }
+        return bays.remove(k);
+    }
+
+    /**
+     * Run a slice of a bay, resuming from its checkpoint if it is up to date, or else starting again from its best
+     * bounds and solution
+     *
+     * @param bay    bay
+     * @param time   length of the slice in seconds
+     * @param config solver configuration
+     * @return the bay
+     */
+    private static Bay run(Bay bay, double time, Config config) {
+        Algorithm algo = new Algorithm(config);
+        algo.keep_checkpoint = true;
+
+        Checkpoint cp = bay.checkpoint;
+        if (bay.report == null) {
+            bay.report = algo.solve(bay.inst, time);
+        } else if (cp != null && cp.best_lb == bay.report.best_lb) {
+            if (bay.report.best_ub < cp.best_ub) {
+                cp.best_ub = bay.report.best_ub; // found after the checkpoint
+                cp.best_sol = bay.report.best_sol;
+            }
+            Report prev = bay.report;
+            bay.report = algo.resume(bay.inst, cp, time); // the counters of the checkpoint are included
+            add_statistics(prev, bay.report);
+        } else {
+            bay.report = merge(bay.report, algo.resolve(bay.inst, bay.report, bay.inst, time));
+        }
+        bay.checkpoint = algo.last_checkpoint;
+        bay.done = bay.report == null || bay.report.best_lb >= bay.report.best_ub;
+        return bay;
+    }
+
+    /**
+     * Add up the reports of two runs on the same instance, the second one starting from the first one
+     *
+     * @param prev report of the first run
+     * @param next report of the second run
+     * @return report of both runs
+     */
+    private static Report merge(Report prev, Report next) {
+        double t_lb = next.best_lb > prev.best_lb ? prev.time_used + next.time_to_best_lb : prev.time_to_best_lb;
+        double t_ub = next.best_ub < prev.best_ub ? prev.time_used + next.time_to_best_ub : prev.time_to_best_ub;
+        Report report = new Report(prev.init_lb, prev.init_ub, next.best_lb, next.best_ub, next.best_sol, t_lb, t_ub, prev.time_used + next.time_used, prev.n_nodes + next.n_nodes, prev.n_probe + next.n_probe, prev.n_tt_hits + next.n_tt_hits, prev.n_tt_misses + next.n_tt_misses, prev.n_pc_hits + next.n_pc_hits, prev.n_pc_misses + next.n_pc_misses, next.lower_bound, next.stats);
+        add_statistics(prev, report);
+        return report;
+    }
+
+    /**
+     * Add the lower bound and search statistics of a run to the report of the next run on the same instance, which
+     * only holds its own
+     *
+     * @param prev report of the first run
+     * @param next report of the second run, whose lower bound and statistics are replaced by the sums
+     */
+    private static void add_statistics(Report prev, Report next) {
+        if (prev.lower_bound != null && next.lower_bound != null) {
+            LowerBound bound = next.lower_bound.copy();
+            bound.merge(prev.lower_bound.copy());
+            next.lower_bound = bound;
+        }
+        if (prev.stats != null && next.stats != null) {
+            boolean deeper = next.stats.depth_nodes.length >= prev.stats.depth_nodes.length;
+            Stats stats = (deeper ? next.stats : prev.stats).copy();
+            stats.merge((deeper ? prev.stats : next.stats).copy());
+            next.stats = stats;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of the heuristics per configuration, shared by all workers without locking
+ *
+ * The heuristics only depend on the configuration, so the number of relocations they need from a configuration is
+ * the same whatever the history. An entry records either that number, or the largest budget the heuristic was
+ * known to exceed.
+ */
+public class ProbeCache {
+    private final int mask; // number of entries minus one
+    private final long[] table; // table[2 * e]: key ^ info, table[2 * e + 1]: info of entry e (torn entries do not verify)
+    public final LongAdder n_hits = new LongAdder(); // number of probes skipped
+    public final LongAdder n_misses = new LongAdder(); // number of probes run
+
+    /**
+     * Create a cache
+     *
+     * @param size_mb memory cap in megabytes
+     */
+    public ProbeCache(int size_mb) {
+        long n_entries = ((long) size_mb << 20) / 16;
+        int size = Integer.highestOneBit((int) Math.max(1, Math.min(n_entries, 1 << 30)));
+        this.mask = size - 1;
+        this.table = new long[2 * size];
+    }
+
+    /**
+     * Get the result of a heuristic
+     *
+     * @param key hash of the configuration, see key
+     * @return number of relocations plus one if known, minus one minus the largest budget known to be exceeded, or 0
+     */
+    public int probe(long key) {
+        int e = (int) key & mask;
+        long info = table[2 * e + 1];
+        return (table[2 * e] ^ info) == key ? (int) info : 0;
+    }
+
+    /**
+     * Record the number of relocations needed by a heuristic
+     *
+     * @param key   hash of the configuration, see key
+     * @param n_rel number of relocations
+     */
+    public void store_solved(long key, int n_rel) {
+        write((int) key & mask, key, n_rel + 1);
+    }
+
+    /**
+     * Record that a heuristic needs more relocations than a budget
+     *
+     * @param key    hash of the configuration, see key
+     * @param budget number of relocations exceeded
+     */
+    public void store_failed(long key, int budget) {
+        int e = (int) key & mask;
+        int info = probe(key);
+        if (info <= 0) {
+            write(e, key, Math.min(info, -budget - 1)); // keep the larger budget
+        }
+    }
+
+    /**
+     * Get the key of a configuration for a heuristic
+     *
+     * @param hash      hash of the configuration
+     * @param heuristic 0 for jzw, 1 for sm2
+     * @return key
+     */
+    public static long key(long hash, int heuristic) {
+        return heuristic == 0 ? hash : ~hash;
+    }
+
+    private void write(int e, long key, int info) {
+        table[2 * e] = key ^ info;
+        table[2 * e + 1] = info;
+    }
+}
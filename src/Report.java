@@ -26,6 +26,13 @@ public class Report {
     public double time_used; // total time used in seconds
     public long n_nodes; // number of nodes explored
     public long n_probe; // number of nodes probed
+    public long n_tt_hits; // number of transposition table hits
+    public long n_tt_misses; // number of transposition table misses
+    public long n_pc_hits; // number of probes skipped thanks to the probe cache
+    public long n_pc_misses; // number of probes run after a probe cache miss
+    public LowerBound lower_bound; // lower bound used, with its evaluation statistics
+    public Stats stats; // search statistics, or null unless Stats.ENABLED
+    public String checkpoint_error; // why the last checkpoint file could not be written, or null
 
     /**
      * Create a report
@@ -40,8 +47,14 @@ public class Report {
      * @param time_used       total time used in seconds
      * @param n_nodes         number of nodes explored
      * @param n_probe         number of nodes probed
+     * @param n_tt_hits       number of transposition table hits
+     * @param n_tt_misses     number of transposition table misses
+     * @param n_pc_hits       number of probes skipped thanks to the probe cache
+     * @param n_pc_misses     number of probes run after a probe cache miss
+     * @param lower_bound     lower bound used, with its evaluation statistics
+     * @param stats           search statistics, or null unless Stats.ENABLED
      */
-    public Report(int init_lb, int init_ub, int best_lb, int best_ub, Move[] best_sol, double time_to_best_lb, double time_to_best_ub, double time_used, long n_nodes, long n_probe) {
+    public Report(int init_lb, int init_ub, int best_lb, int best_ub, Move[] best_sol, double time_to_best_lb, double time_to_best_ub, double time_used, long n_nodes, long n_probe, long n_tt_hits, long n_tt_misses, long n_pc_hits, long n_pc_misses, LowerBound lower_bound, Stats stats) {
         this.init_lb = init_lb;
         this.init_ub = init_ub;
         this.best_lb = best_lb;
@@ -52,5 +65,11 @@ public class Report {
         this.time_used = time_used;
         this.n_nodes = n_nodes;
         this.n_probe = n_probe;
+        this.n_tt_hits = n_tt_hits;
+        this.n_tt_misses = n_tt_misses;
+        this.n_pc_hits = n_pc_hits;
+        this.n_pc_misses = n_pc_misses;
+        this.lower_bound = lower_bound;
+        this.stats = stats;
     }
 }
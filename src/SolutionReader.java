@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Buffered reader of the named reports written by SolutionWriter
+ */
+public class SolutionReader implements Closeable {
+    private static final String[] REPORT_KEYS = {"init_lb", "init_ub", "best_lb", "best_ub", "n_nodes", "n_probe", "n_tt_hits", "n_tt_misses", "n_pc_hits", "n_pc_misses"};
+
+    private final ReadableByteChannel channel;
+    private final SolutionWriter.Format format;
+    private final ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+
+    public String name; // name of the instance of the last record read
+    public String status; // status of the last record read
+    public Report report; // report of the last record read, without lower bound and statistics, whose best solution is null if there is none
+
+    /**
+     * Create a reader, which checks the header of the binary format right away
+     *
+     * @param channel input channel, closed with the reader
+     * @param format  input format
+     * @throws IOException channel cannot be read or is not in the binary format
+     */
+    public SolutionReader(ReadableByteChannel channel, SolutionWriter.Format format) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        buf.limit(0);
+        if (format == SolutionWriter.Format.BINARY && (!fill(8) || buf.getInt() != SolutionWriter.MAGIC || buf.getInt() != SolutionWriter.VERSION)) {
+            throw new IOException("not a solution stream of version " + SolutionWriter.VERSION);
+        }
+    }
+
+    /**
+     * Read the next record into name and report
+     *
+     * @return false at the end of the stream
+     * @throws IOException channel cannot be read or the record is malformed
+     */
+    public boolean next() throws IOException {
+        return format == SolutionWriter.Format.BINARY ? next_binary() : next_jsonl();
+    }
+
+    private boolean next_binary() throws IOException {
+        if (!fill(2)) {
+            if (buf.hasRemaining()) {
+                throw new IOException("truncated record");
+            }
+            return false;
+        }
+        String new_name = utf8(buf.getChar());
+        require(2);
+        String new_status = utf8(buf.getChar());
+        require(16 + 24 + 48 + 4);
+        int init_lb = buf.getInt();
+        int init_ub = buf.getInt();
+        int best_lb = buf.getInt();
+        int best_ub = buf.getInt();
+        double time_to_best_lb = buf.getDouble();
+        double time_to_best_ub = buf.getDouble();
+        double time_used = buf.getDouble();
+        long[] counters = new long[6];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = buf.getLong();
+        }
+        int n_moves = buf.getInt();
+        Move[] moves = n_moves < 0 ? null : new Move[n_moves];
+        for (int i = 0; i < n_moves; i++) {
+            require(8);
+            moves[i] = new Move(buf.getInt(), buf.getChar(), buf.getChar());
+        }
+
+        name = new_name;
+        status = new_status;
+        report = new Report(init_lb, init_ub, best_lb, best_ub, moves, time_to_best_lb, time_to_best_ub, time_used, counters[0], counters[1], counters[2], counters[3], counters[4], counters[5], null, null);
+        return true;
+    }
+
+    private boolean next_jsonl() throws IOException {
+        int c = skip_space();
+        if (c < 0) {
+            return false;
+        }
+        if (c != '{') {
+            throw new IOException("expected a JSON object");
+        }
+
+        String new_name = null;
+        String new_status = null;
+        long[] values = new long[REPORT_KEYS.length]; // bounds and counters
+        double[] times = new double[3];
+        Move[] moves = null; // no solution unless there are moves
+        do {
+            String key = string(skip_space());
+            if (skip_space() != ':') {
+                throw new IOException("expected ':' after " + key);
+            }
+            switch (key) {
+                case "name":
+                    new_name = string(skip_space());
+                    break;
+                case "status":
+                    new_status = string(skip_space());
+                    break;
+                case "moves":
+                    moves = moves(skip_space());
+                    break;
+                case "time_to_best_lb":
+                    times[0] = Double.parseDouble(number());
+                    break;
+                case "time_to_best_ub":
+                    times[1] = Double.parseDouble(number());
+                    break;
+                case "time_used":
+                    times[2] = Double.parseDouble(number());
+                    break;
+                default:
+                    int k = index(key);
+                    long value = Long.parseLong(number());
+                    if (k >= 0) {
+                        values[k] = value;
+                    }
+            }
+            c = skip_space();
+        } while (c == ',');
+        if (c != '}') {
+            throw new IOException("expected '}'");
+        }
+
+        name = new_name;
+        status = new_status;
+        report = new Report((int) values[0], (int) values[1], (int) values[2], (int) values[3], moves, times[0], times[1], times[2], values[4], values[5], values[6], values[7], values[8], values[9], null, null);
+        return true;
+    }
+
+    private static int index(String key) {
+        for (int k = 0; k < REPORT_KEYS.length; k++) {
+            if (REPORT_KEYS[k].equals(key)) {
+                return k;
+            }
+        }
+        return -1; // unknown keys are skipped
+    }
+
+    private Move[] moves(int c) throws IOException {
+        if (c == 'n') {
+            expect_ascii("ull");
+            return null;
+        }
+        ArrayList<Move> moves = new ArrayList<>();
+        if (c != '[') {
+            throw new IOException("expected an array of moves or null");
+        }
+        c = skip_space();
+        while (c == '[') {
+            int p = Integer.parseInt(number());
+            expect(',');
+            int s = Integer.parseInt(number());
+            expect(',');
+            int d = Integer.parseInt(number());
+            expect(']');
+            moves.add(new Move(p, s, d));
+            c = skip_space();
+            if (c == ',') {
+                c = skip_space();
+            }
+        }
+        if (c != ']') {
+            throw new IOException("expected ']' after the moves");
+        }
+        return moves.toArray(new Move[0]);
+    }
+
+    private void expect_ascii(String expected) throws IOException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (read() != expected.charAt(i)) {
+                throw new IOException("expected '" + expected + "'");
+            }
+        }
+    }
+
+    private void expect(int expected) throws IOException {
+        if (skip_space() != expected) {
+            throw new IOException("expected '" + (char) expected + "'");
+        }
+    }
+
+    private String string(int c) throws IOException {
+        if (c != '"') {
+            throw new IOException("expected a string");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while ((c = read()) != '"') {
+            if (c < 0) {
+                throw new IOException("unterminated string");
+            }
+            if (c == '\\') {
+                c = read();
+                if (c == 'u') {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        code = code * 16 + Character.digit(read(), 16);
+                    }
+                    byte[] utf8 = String.valueOf((char) code).getBytes(StandardCharsets.UTF_8);
+                    bytes.write(utf8, 0, utf8.length);
+                    continue;
+                }
+                c = c == 'n' ? '\n' : c == 't' ? '\t' : c == 'r' ? '\r' : c;
+            }
+            bytes.write(c);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String utf8(int n) throws IOException {
+        byte[] bytes = new byte[n];
+        for (int i = 0; i < n; ) {
+            require(1);
+            int m = Math.min(buf.remaining(), n - i);
+            buf.get(bytes, i, m);
+            i += m;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String number() throws IOException {
+        int c = skip_space();
+        if (!is_number(c)) {
+            throw new IOException("expected a number");
+        }
+        StringBuilder sb = new StringBuilder().append((char) c);
+        while (fill(1) && is_number(buf.get(buf.position()))) {
+            sb.append((char) buf.get());
+        }
+        return sb.toString();
+    }
+
+    private static boolean is_number(int c) {
+        return c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9');
+    }
+
+    private int skip_space() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int read() throws IOException {
+        return fill(1) ? buf.get() & 0xff : -1;
+    }
+
+    private void require(int n) throws IOException {
+        if (!fill(n)) {
+            throw new IOException("truncated record");
+        }
+    }
+
+    /**
+     * Make at least n bytes available in the buffer, reading the channel if needed
+     *
+     * @param n number of bytes, at most the capacity of the buffer
+     * @return false if the stream ends before
+     */
+    private boolean fill(int n) throws IOException {
+        if (buf.remaining() >= n) {
+            return true;
+        }
+        if (n > buf.capacity()) {
+            throw new IOException("record field of " + n + " bytes is too large");
+        }
+        buf.compact();
+        while (buf.position() < n) {
+            if (channel.read(buf) < 0) {
+                break;
+            }
+        }
+        buf.flip();
+        return buf.remaining() >= n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
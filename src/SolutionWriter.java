@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of named reports with their solutions, which are written to a channel as the buffer fills up
+ *
+ * JSONL: one object per line with the name, the status, the bounds, times and counters of the report, and the moves
+ * as [p, s, d] triples, or null if there is no solution. Binary, big-endian: the magic "SOLS" and the version as ints,
+ * then per record the name and the status as char lengths and UTF-8 bytes, the four bounds as ints, the three times
+ * as doubles, the six counters as longs, the number of moves as an int, -1 if there is no solution, and each move as
+ * an int priority and char source and destination stacks. The lower bound and statistics of a report are not written.
+ */
+public class SolutionWriter implements Closeable {
+
+    public enum Format {
+        JSONL, BINARY
+    }
+
+    static final int MAGIC = 0x534f4c53; // "SOLS"
+    static final int VERSION = 2;
+
+    private static final Report NO_REPORT = new Report(0, 0, 0, 0, null, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, null); // fields written without a report
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+    private final byte[] digits = new byte[20]; // scratch for formatting numbers
+
+    /**
+     * Create a writer, which writes the header of the binary format right away
+     *
+     * @param channel output channel, closed with the writer
+     * @param format  output format
+     * @throws IOException channel cannot be written
+     */
+    public SolutionWriter(WritableByteChannel channel, Format format) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        if (format == Format.BINARY) {
+            buf.putInt(MAGIC).putInt(VERSION);
+        }
+    }
+
+    /**
+     * Write a report with its solution
+     *
+     * @param name   name of the instance
+     * @param status status of the instance, e.g., "solved", "timeout", "infeasible" or an error message
+     * @param report report, whose best solution is null if it has no relocation (best_ub == 0) or if there is no
+     *               solution, or null if there is no report, e.g., for an error, in which case the fields are 0
+     * @throws IOException              channel cannot be written
+     * @throws IllegalArgumentException name or status of more than 65535 UTF-8 bytes in the binary format
+     */
+    public void write(String name, String status, Report report) throws IOException {
+        byte[] name_bytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] status_bytes = status.getBytes(StandardCharsets.UTF_8);
+        int n_moves = report == null ? -1 : report.best_sol != null ? report.best_ub : report.best_ub == 0 ? 0 : -1;
+        if (report == null) {
+            report = NO_REPORT;
+        }
+
+        if (format == Format.BINARY) {
+            if (name_bytes.length > Character.MAX_VALUE || status_bytes.length > Character.MAX_VALUE) {
+                throw new IllegalArgumentException("name or status of more than " + (int) Character.MAX_VALUE + " bytes");
+            }
+            ensure(2);
+            buf.putChar((char) name_bytes.length);
+            bytes(name_bytes);
+            ensure(2);
+            buf.putChar((char) status_bytes.length);
+            bytes(status_bytes);
+            ensure(16 + 24 + 48 + 4);
+            buf.putInt(report.init_lb).putInt(report.init_ub).putInt(report.best_lb).putInt(report.best_ub);
+            buf.putDouble(report.time_to_best_lb).putDouble(report.time_to_best_ub).putDouble(report.time_used);
+            buf.putLong(report.n_nodes).putLong(report.n_probe).putLong(report.n_tt_hits).putLong(report.n_tt_misses).putLong(report.n_pc_hits).putLong(report.n_pc_misses);
+            buf.putInt(n_moves);
+            for (int i = 0; i < n_moves; i++) {
+                Move move = report.best_sol[i];
+                ensure(8);
+                buf.putInt(move.p).putChar((char) move.s).putChar((char) move.d);
+            }
+            return;
+        }
+
+        ensure(16);
+        ascii("{\"name\":");
+        string(name_bytes);
+        ensure(16);
+        ascii(",\"status\":");
+        string(status_bytes);
+        field("init_lb", report.init_lb);
+        field("init_ub", report.init_ub);
+        field("best_lb", report.best_lb);
+        field("best_ub", report.best_ub);
+        time("time_to_best_lb", report.time_to_best_lb);
+        time("time_to_best_ub", report.time_to_best_ub);
+        time("time_used", report.time_used);
+        field("n_nodes", report.n_nodes);
+        field("n_probe", report.n_probe);
+        field("n_tt_hits", report.n_tt_hits);
+        field("n_tt_misses", report.n_tt_misses);
+        field("n_pc_hits", report.n_pc_hits);
+        field("n_pc_misses", report.n_pc_misses);
+        ensure(16);
+        if (n_moves < 0) {
+            ascii(",\"moves\":null}\n");
+            return;
+        }
+        ascii(",\"moves\":[");
+        for (int i = 0; i < n_moves; i++) {
+            Move move = report.best_sol[i];
+            ensure(40);
+            ascii(i == 0 ? "[" : ",[");
+            number(move.p);
+            ascii(",");
+            number(move.s);
+            ascii(",");
+            number(move.d);
+            ascii("]");
+        }
+        ensure(3);
+        ascii("]}\n");
+    }
+
+    private void bytes(byte[] bytes) throws IOException {
+        for (int i = 0; i < bytes.length; ) {
+            ensure(1);
+            int n = Math.min(buf.remaining(), bytes.length - i);
+            buf.put(bytes, i, n);
+            i += n;
+        }
+    }
+
+    private void string(byte[] utf8) throws IOException {
+        ensure(1);
+        ascii("\"");
+        for (byte c : utf8) {
+            ensure(7);
+            if (c == '"' || c == '\\') {
+                buf.put((byte) '\\').put(c);
+            } else if (c >= 0 && c < 0x20) {
+                ascii("\\u00");
+                buf.put((byte) Character.forDigit(c >> 4, 16)).put((byte) Character.forDigit(c & 15, 16));
+            } else {
+                buf.put(c);
+            }
+        }
+        ensure(1);
+        ascii("\"");
+    }
+
+    private void field(String key, long value) throws IOException {
+        ensure(key.length() + 24);
+        ascii(",\"");
+        ascii(key);
+        ascii("\":");
+        number(value);
+    }
+
+    private void time(String key, double value) throws IOException {
+        long millis = Math.round(value * 1000);
+        ensure(key.length() + 28);
+        ascii(",\"");
+        ascii(key);
+        ascii("\":");
+        number(millis / 1000);
+        buf.put((byte) '.');
+        buf.put((byte) ('0' + millis % 1000 / 100)).put((byte) ('0' + millis % 100 / 10)).put((byte) ('0' + millis % 10));
+    }
+
+    private void number(long value) {
+        if (value < 0) {
+            buf.put((byte) '-');
+            value = -value; // values are far from Long.MIN_VALUE
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (n > 0) {
+            buf.put(digits[--n]);
+        }
+    }
+
+    private void ascii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            buf.put((byte) s.charAt(i));
+        }
+    }
+
+    /**
+     * Make room in the buffer, writing it out if needed
+     *
+     * @param n number of bytes to be put, at most the capacity of the buffer
+     */
+    private void ensure(int n) throws IOException {
+        if (buf.remaining() < n) {
+            flush();
+            if (buf.remaining() < n) {
+                throw new IOException("record field of " + n + " bytes is too large");
+            }
+        }
+    }
+
+    /**
+     * Write out the buffer
+     *
+     * @throws IOException channel cannot be written
+     */
+    public void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -15,11 +15,13 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class State {
     public int n_stacks; // number of stacks, indexed from 0 to n_stacks - 1
     public int n_tiers; // number of tiers, indexed from 1 to n_tiers
+    public int stride; // distance between two consecutive stacks in a slot array, i.e., n_tiers + 1
     public int n_blocks; // number of blocks
     public int n_bad; // number of badly-placed blocks
     public int s_min; // target stack
@@ -28,29 +30,45 @@ public class State {
     public Type[] last_change_type; // last_change_type[s]: type of last change to stack s
     public int[] last_move_out_time; // last_move_out_time[s]: time of last relocation moving out of stack s
     public int[] last_move_in_time; // last_move_in_time[s]: time of last relocation moving into stack s
-    public int[][] p; // p[s][t]: priority
-    public int[][] q; // q[s][t]: quality, i.e., smallest among p[s][1...h[s]]
-    public int[][] b; // b[s][t]: badness, i.e., number of consecutive badly-placed blocks
-    public int[][] l; // l[s][t]: time when the block is put into slot (s, t)
+    public int[] p; // p[s * stride + t]: priority
+    public int[] q; // q[s * stride + t]: quality, i.e., smallest among priorities in slots (s, 1...t)
+    public int[] b; // b[s * stride + t]: badness, i.e., number of consecutive badly-placed blocks
+    public int[] l; // l[s * stride + t]: time when the block is put into slot (s, t)
+    public int[] work; // scratch array of length n_stacks used by lower bounds, not copied
+    private Zobrist zobrist; // keys for hashing, shared by all copies, or null if the state is not hashed
+    private long[] stack_hash; // stack_hash[s]: hash of the blocks in stack s regardless of its position
+    private long hash; // hash of the configuration
+
+    private static final Type[] TYPES = Type.values(); // types indexed by ordinal
+    private static final int TRAIL_RELOCATE = -1; // trail tag of a relocation record
+    private static final int TRAIL_RETRIEVE = -2; // trail tag of a retrieval record
+
+    private int[] trail; // undo trail of in-place changes, allocated on first use
+    private int trail_len; // number of entries on the undo trail
 
     /**
      * Create space for a state
      *
      * @param n_stacks number of stacks, indexed from 0 to n_stacks - 1
      * @param n_tiers  number of tiers, indexed from 1 to n_tiers (0 is ground)
+     * @param zobrist  keys for hashing, or null for no hashing
      */
-    private State(int n_stacks, int n_tiers) {
+    private State(int n_stacks, int n_tiers, Zobrist zobrist) {
         this.n_stacks = n_stacks;
         this.n_tiers = n_tiers;
+        this.stride = n_tiers + 1;
         this.h = new int[n_stacks];
         this.last_change_time = new int[n_stacks];
         this.last_change_type = new Type[n_stacks];
         this.last_move_out_time = new int[n_stacks];
         this.last_move_in_time = new int[n_stacks];
-        this.p = new int[n_stacks][n_tiers + 1];
-        this.q = new int[n_stacks][n_tiers + 1];
-        this.b = new int[n_stacks][n_tiers + 1];
-        this.l = new int[n_stacks][n_tiers + 1];
+        this.p = new int[n_stacks * stride];
+        this.q = new int[n_stacks * stride];
+        this.b = new int[n_stacks * stride];
+        this.l = new int[n_stacks * stride];
+        this.zobrist = zobrist;
+        this.stack_hash = new long[n_stacks];
+        this.work = new int[n_stacks];
     }
 
     /**
@@ -65,14 +83,18 @@ public class State {
      * @param last_change_type   last_change_type[s]: type of last change to stack s
      * @param last_move_out_time last_move_out_time[s]: time of last relocation moving out of stack s
      * @param last_move_in_time  last_move_in_time[s]: time of last relocation moving into stack s
-     * @param p                  p[s][t]: priority
-     * @param q                  q[s][t]: quality, i.e., smallest among p[s][1...h[s]]
-     * @param b                  b[s][t]: badness, i.e., number of consecutive badly-placed blocks
-     * @param l                  l[s][t]: time when the block is put into slot (s, t)
+     * @param p                  p[s * stride + t]: priority
+     * @param q                  q[s * stride + t]: quality, i.e., smallest among priorities in slots (s, 1...t)
+     * @param b                  b[s * stride + t]: badness, i.e., number of consecutive badly-placed blocks
+     * @param l                  l[s * stride + t]: time when the block is put into slot (s, t)
+     * @param zobrist            keys for hashing
+     * @param stack_hash         stack_hash[s]: hash of the blocks in stack s regardless of its position
+     * @param hash               hash of the configuration
      */
-    private State(int n_stacks, int n_tiers, int n_blocks, int n_bad, int s_min, int[] h, int[] last_change_time, Type[] last_change_type, int[] last_move_out_time, int[] last_move_in_time, int[][] p, int[][] q, int[][] b, int[][] l) {
+    private State(int n_stacks, int n_tiers, int n_blocks, int n_bad, int s_min, int[] h, int[] last_change_time, Type[] last_change_type, int[] last_move_out_time, int[] last_move_in_time, int[] p, int[] q, int[] b, int[] l, Zobrist zobrist, long[] stack_hash, long hash) {
         this.n_stacks = n_stacks;
         this.n_tiers = n_tiers;
+        this.stride = n_tiers + 1;
         this.n_blocks = n_blocks;
         this.n_bad = n_bad;
         this.s_min = s_min;
@@ -85,6 +107,10 @@ public class State {
         this.q = q;
         this.b = b;
         this.l = l;
+        this.zobrist = zobrist;
+        this.stack_hash = stack_hash;
+        this.hash = hash;
+        this.work = new int[n_stacks];
     }
 
     /**
@@ -93,16 +119,26 @@ public class State {
      * @return a copy of the state
      */
     public State copy() {
-        return new State(n_stacks, n_tiers, n_blocks, n_bad, s_min, h.clone(), last_change_time.clone(), last_change_type.clone(), last_move_out_time.clone(), last_move_in_time.clone(), Arrays.stream(p).map(int[]::clone).toArray(int[][]::new), Arrays.stream(q).map(int[]::clone).toArray(int[][]::new), Arrays.stream(b).map(int[]::clone).toArray(int[][]::new), Arrays.stream(l).map(int[]::clone).toArray(int[][]::new));
+        return new State(n_stacks, n_tiers, n_blocks, n_bad, s_min, h.clone(), last_change_time.clone(), last_change_type.clone(), last_move_out_time.clone(), last_move_in_time.clone(), p.clone(), q.clone(), b.clone(), l.clone(), zobrist, stack_hash.clone(), hash);
     }
 
     /**
-     * Initialize a state from an instance
+     * Initialize a state from an instance without hashing
      *
      * @param inst instance
      */
     public static State initialize(Instance inst) {
-        State state = new State(inst.n_stacks, inst.n_tiers);
+        return initialize(inst, null);
+    }
+
+    /**
+     * Initialize a state from an instance
+     *
+     * @param inst    instance
+     * @param zobrist keys for hashing, created for the size of the instance, or null for no hashing
+     */
+    public static State initialize(Instance inst, Zobrist zobrist) {
+        State state = new State(inst.n_stacks, inst.n_tiers, zobrist);
         state.n_blocks = inst.n_blocks;
         state.n_bad = 0;
 
@@ -111,7 +147,8 @@ public class State {
             state.update_slot(s, 0, inst.max_prio + 1, 0);
             for (int t = 1; t <= state.h[s]; t++) {
                 state.update_slot(s, t, inst.p[s][t], 0);
-                state.n_bad += state.b[s][t] > 0 ? 1 : 0;
+                state.n_bad += state.b[s * state.stride + t] > 0 ? 1 : 0;
+                state.toggle_hash(s, t);
             }
 
             state.last_change_time[s] = 0;
@@ -124,13 +161,58 @@ public class State {
         return state;
     }
 
+    /**
+     * Get the hash of the configuration, i.e., heights and priorities of all stacks
+     *
+     * @return hash of the configuration
+     * @throws IllegalStateException the state is not hashed
+     */
+    public long hash() {
+        if (zobrist == null) {
+            throw new IllegalStateException("state initialized without hashing");
+        }
+        return hash;
+    }
+
+    /**
+     * Get the hash of the configuration regardless of the order of stacks, combined from the hashes of stacks
+     *
+     * @return hash of the multiset of stacks
+     * @throws IllegalStateException the state is not hashed
+     */
+    public long symmetric_hash() {
+        if (zobrist == null) {
+            throw new IllegalStateException("state initialized without hashing");
+        }
+        long sym_hash = 0;
+        for (int s = 0; s < n_stacks; s++) {
+            sym_hash += Zobrist.mix(stack_hash[s]);
+        }
+        return sym_hash;
+    }
+
+    /**
+     * Add or remove the block in a slot to or from the hashes
+     *
+     * @param s stack
+     * @param t tier
+     */
+    private void toggle_hash(int s, int t) {
+        if (zobrist == null) {
+            return;
+        }
+        int key = t * zobrist.n_prios + p[s * stride + t];
+        hash ^= zobrist.slot_keys[s * zobrist.stride + key];
+        stack_hash[s] ^= zobrist.tier_keys[key];
+    }
+
     /**
      * Check if the target block is retrievable
      *
      * @return true if the target block is retrievable
      */
     public boolean is_retrievable() {
-        return n_blocks > 0 && b[s_min][h[s_min]] == 0;
+        return n_blocks > 0 && b[s_min * stride + h[s_min]] == 0;
     }
 
     /**
@@ -141,7 +223,7 @@ public class State {
      * @return ascending order of qualities with ties broken by less topmost blockage
      */
     private int compare(int s1, int s2) {
-        return q[s1][h[s1]] != q[s2][h[s2]] ? q[s1][h[s1]] - q[s2][h[s2]] : b[s1][h[s1]] - b[s2][h[s2]];
+        return q[s1 * stride + h[s1]] != q[s2 * stride + h[s2]] ? q[s1 * stride + h[s1]] - q[s2 * stride + h[s2]] : b[s1 * stride + h[s1]] - b[s2 * stride + h[s2]];
     }
 
     /**
@@ -169,15 +251,15 @@ public class State {
      * @param l time
      */
     private void update_slot(int s, int t, int p, int l) {
-        this.p[s][t] = p;
-        if (t == 0 || p <= this.q[s][t - 1]) {
-            this.q[s][t] = p;
-            this.b[s][t] = 0;
+        this.p[s * stride + t] = p;
+        if (t == 0 || p <= this.q[s * stride + t - 1]) {
+            this.q[s * stride + t] = p;
+            this.b[s * stride + t] = 0;
         } else {
-            this.q[s][t] = this.q[s][t - 1];
-            this.b[s][t] = this.b[s][t - 1] + 1;
+            this.q[s * stride + t] = this.q[s * stride + t - 1];
+            this.b[s * stride + t] = this.b[s * stride + t - 1] + 1;
         }
-        this.l[s][t] = l;
+        this.l[s * stride + t] = l;
     }
 
     /**
@@ -187,7 +269,8 @@ public class State {
      * @param l time of this relocation
      */
     private void move_out(int s, int l) {
-        n_bad -= b[s][h[s]--] > 0 ? 1 : 0;
+        toggle_hash(s, h[s]);
+        n_bad -= b[s * stride + h[s]--] > 0 ? 1 : 0;
         last_change_time[s] = l;
         last_change_type[s] = Type.MOVE_OUT;
         last_move_out_time[s] = l;
@@ -202,7 +285,8 @@ public class State {
      */
     private void move_in(int d, int p, int l) {
         update_slot(d, ++h[d], p, l);
-        n_bad += b[d][h[d]] > 0 ? 1 : 0;
+        toggle_hash(d, h[d]);
+        n_bad += b[d * stride + h[d]] > 0 ? 1 : 0;
         last_change_time[d] = l;
         last_change_type[d] = Type.MOVE_IN;
         last_move_in_time[d] = l;
@@ -216,9 +300,26 @@ public class State {
      * @param l time of this relocation
      */
     public void relocate(int s, int d, int l) {
-        int p = this.p[s][h[s]];
+        int p = this.p[s * stride + h[s]];
+        int target_q = q[s_min * stride + h[s_min]];
+        int target_b = b[s_min * stride + h[s_min]];
         move_out(s, l);
         move_in(d, p, l);
+
+        /*
+         * Only stacks s and d changed, so the target is the best of the previous target, s and d unless the target
+         * stack itself got worse; with duplicate priorities, either s or d may become the target
+         */
+        if (q[s_min * stride + h[s_min]] > target_q || q[s_min * stride + h[s_min]] == target_q && b[s_min * stride + h[s_min]] > target_b) {
+            reset_target();
+        } else {
+            if (compare(s, s_min) < 0 || compare(s, s_min) == 0 && s < s_min) {
+                s_min = s;
+            }
+            if (compare(d, s_min) < 0 || compare(d, s_min) == 0 && d < s_min) {
+                s_min = d;
+            }
+        }
     }
 
     /**
@@ -228,9 +329,271 @@ public class State {
      */
     public void retrieve(int l) {
         n_blocks--;
+        toggle_hash(s_min, h[s_min]);
         h[s_min]--;
         last_change_time[s_min] = l;
         last_change_type[s_min] = Type.RETRIEVE;
         reset_target();
     }
+
+    /**
+     * Get the current position of the undo trail
+     *
+     * @return mark to be passed to undo
+     */
+    public int mark() {
+        return trail_len;
+    }
+
+    /**
+     * Push a record onto the undo trail
+     *
+     * @param n number of entries to be pushed
+     * @return position of the first entry
+     */
+    private int push(int n) {
+        if (trail == null) {
+            trail = new int[64];
+        } else if (trail_len + n > trail.length) {
+            trail = Arrays.copyOf(trail, Math.max(trail.length * 2, trail_len + n));
+        }
+        int pos = trail_len;
+        trail_len += n;
+        return pos;
+    }
+
+    /**
+     * Relocate the topmost block of a stack to another stack, recording the change on the undo trail
+     *
+     * @param s source stack
+     * @param d destination stack
+     * @param l time of this relocation
+     */
+    public void apply_relocate(int s, int d, int l) {
+        int pos = push(14);
+        trail[pos] = s;
+        trail[pos + 1] = d;
+        trail[pos + 2] = last_change_time[s];
+        trail[pos + 3] = last_change_type[s].ordinal();
+        trail[pos + 4] = last_move_out_time[s];
+        trail[pos + 5] = last_change_time[d];
+        trail[pos + 6] = last_change_type[d].ordinal();
+        trail[pos + 7] = last_move_in_time[d];
+        trail[pos + 8] = p[d * stride + h[d] + 1]; // the slot may still hold a retrieved block to be restored
+        trail[pos + 9] = q[d * stride + h[d] + 1];
+        trail[pos + 10] = b[d * stride + h[d] + 1];
+        trail[pos + 11] = this.l[d * stride + h[d] + 1];
+        trail[pos + 12] = s_min;
+        trail[pos + 13] = TRAIL_RELOCATE;
+        relocate(s, d, l);
+    }
+
+    /**
+     * Retrieve the target block from the top of the target stack, recording the change on the undo trail
+     *
+     * @param l time of this retrieval
+     */
+    public void apply_retrieve(int l) {
+        int pos = push(4);
+        trail[pos] = s_min;
+        trail[pos + 1] = last_change_time[s_min];
+        trail[pos + 2] = last_change_type[s_min].ordinal();
+        trail[pos + 3] = TRAIL_RETRIEVE;
+        retrieve(l);
+    }
+
+    /**
+     * Undo all recorded changes back to a mark
+     *
+     * @param mark position of the undo trail returned by mark
+     */
+    public void undo(int mark) {
+        while (trail_len > mark) {
+            if (trail[trail_len - 1] == TRAIL_RELOCATE) {
+                int pos = trail_len -= 14;
+                int s = trail[pos];
+                int d = trail[pos + 1];
+                n_bad -= b[d * stride + h[d]] > 0 ? 1 : 0;
+                toggle_hash(d, h[d]);
+                p[d * stride + h[d]] = trail[pos + 8];
+                q[d * stride + h[d]] = trail[pos + 9];
+                b[d * stride + h[d]] = trail[pos + 10];
+                l[d * stride + h[d]--] = trail[pos + 11];
+                n_bad += b[s * stride + ++h[s]] > 0 ? 1 : 0;
+                toggle_hash(s, h[s]);
+                last_change_time[s] = trail[pos + 2];
+                last_change_type[s] = TYPES[trail[pos + 3]];
+                last_move_out_time[s] = trail[pos + 4];
+                last_change_time[d] = trail[pos + 5];
+                last_change_type[d] = TYPES[trail[pos + 6]];
+                last_move_in_time[d] = trail[pos + 7];
+                s_min = trail[pos + 12];
+            } else {
+                int pos = trail_len -= 4;
+                int s = trail[pos];
+                n_blocks++;
+                h[s]++;
+                toggle_hash(s, h[s]);
+                last_change_time[s] = trail[pos + 1];
+                last_change_type[s] = TYPES[trail[pos + 2]];
+                s_min = s;
+            }
+        }
+    }
+
+    /**
+     * Compact encoding of the states of an instance into a fixed number of longs
+     *
+     * Heights, last changes and the priority and relocation time of every block are stored on the fewest bits that
+     * fit the instance; qualities, badness, target and hashes are recomputed when unpacking. A 10x8 bay with 70 blocks
+     * and relocation times below 64 takes 1150 bits, i.e., 18 longs or 144 bytes, against about 2 KB for a State.
+     */
+    public static class Codec {
+        private final int n_stacks;
+        private final int n_tiers;
+        private final int ground; // priority of the ground slots, as set by initialize
+        private final int tier_bits; // bits of a height
+        private final int prio_bits; // bits of a priority
+        private final int time_bits; // bits of a relocation time
+        private final int type_bits; // bits of a type of change
+        public final int n_longs; // number of longs per state
+
+        /**
+         * Create an encoding
+         *
+         * @param n_stacks  number of stacks
+         * @param n_tiers   number of tiers
+         * @param n_blocks  largest number of blocks
+         * @param max_prio  largest priority of the instance, whose states all have ground slots of max_prio + 1
+         * @param max_depth largest relocation time
+         */
+        public Codec(int n_stacks, int n_tiers, int n_blocks, int max_prio, int max_depth) {
+            this.n_stacks = n_stacks;
+            this.n_tiers = n_tiers;
+            this.ground = max_prio + 1;
+            this.tier_bits = bits(n_tiers);
+            this.prio_bits = bits(max_prio);
+            this.time_bits = bits(max_depth);
+            this.type_bits = bits(TYPES.length - 1);
+            long n_bits = (long) n_stacks * (tier_bits + 3 * time_bits + type_bits) + (long) n_blocks * (prio_bits + time_bits);
+            this.n_longs = (int) ((n_bits + 63) / 64);
+        }
+
+        private static int bits(int max_value) {
+            return 32 - Integer.numberOfLeadingZeros(max_value);
+        }
+
+        /**
+         * Pack a state, whose heights, priorities and times have to fit the limits of the encoding
+         *
+         * @param state state of the instance
+         * @param dst   destination array
+         * @param off   index of the first of the n_longs longs written
+         */
+        public void pack(State state, long[] dst, int off) {
+            Arrays.fill(dst, off, off + n_longs, 0);
+            long pos = (long) off << 6;
+            for (int s = 0; s < n_stacks; s++) {
+                pos = put(dst, pos, tier_bits, state.h[s]);
+                pos = put(dst, pos, time_bits, state.last_change_time[s]);
+                pos = put(dst, pos, type_bits, state.last_change_type[s].ordinal());
+                pos = put(dst, pos, time_bits, state.last_move_out_time[s]);
+                pos = put(dst, pos, time_bits, state.last_move_in_time[s]);
+                for (int t = 1; t <= state.h[s]; t++) {
+                    pos = put(dst, pos, prio_bits, state.p[s * state.stride + t]);
+                    pos = put(dst, pos, time_bits, state.l[s * state.stride + t]);
+                }
+            }
+        }
+
+        /**
+         * Unpack a state
+         *
+         * @param src   source array
+         * @param off   index of the first of the n_longs longs read
+         * @param state state of the instance, e.g., a copy of the root state, which is overwritten and whose undo
+         *              trail is cleared
+         */
+        public void unpack(long[] src, int off, State state) {
+            long pos = (long) off << 6;
+            int stride = state.stride;
+            state.n_blocks = 0;
+            state.n_bad = 0;
+            state.hash = 0;
+            state.trail_len = 0;
+            for (int s = 0; s < n_stacks; s++) {
+                state.h[s] = (int) get(src, pos, tier_bits);
+                pos += tier_bits;
+                state.last_change_time[s] = (int) get(src, pos, time_bits);
+                pos += time_bits;
+                state.last_change_type[s] = TYPES[(int) get(src, pos, type_bits)];
+                pos += type_bits;
+                state.last_move_out_time[s] = (int) get(src, pos, time_bits);
+                pos += time_bits;
+                state.last_move_in_time[s] = (int) get(src, pos, time_bits);
+                pos += time_bits;
+
+                state.stack_hash[s] = 0;
+                state.update_slot(s, 0, ground, 0);
+                for (int t = 1; t <= state.h[s]; t++) {
+                    int p = (int) get(src, pos, prio_bits);
+                    pos += prio_bits;
+                    int l = (int) get(src, pos, time_bits);
+                    pos += time_bits;
+                    state.update_slot(s, t, p, l);
+                    state.n_bad += state.b[s * stride + t] > 0 ? 1 : 0;
+                    state.toggle_hash(s, t);
+                }
+                state.n_blocks += state.h[s];
+            }
+            state.reset_target();
+        }
+
+        /**
+         * Pack a state into bytes
+         *
+         * @param state state of the instance
+         * @return 8 * n_longs bytes
+         */
+        public byte[] to_bytes(State state) {
+            long[] words = new long[n_longs];
+            pack(state, words, 0);
+            ByteBuffer buf = ByteBuffer.allocate(8 * n_longs);
+            buf.asLongBuffer().put(words);
+            return buf.array();
+        }
+
+        /**
+         * Unpack a state from bytes
+         *
+         * @param bytes 8 * n_longs bytes written by to_bytes
+         * @param state state of the instance, which is overwritten
+         */
+        public void from_bytes(byte[] bytes, State state) {
+            long[] words = new long[n_longs];
+            ByteBuffer.wrap(bytes).asLongBuffer().get(words);
+            unpack(words, 0, state);
+        }
+
+        private static long put(long[] a, long pos, int n, long value) {
+            int w = (int) (pos >>> 6);
+            int shift = (int) (pos & 63);
+            value &= (1L << n) - 1; // a value out of range must not spill into the next fields
+            a[w] |= value << shift;
+            if (shift + n > 64) {
+                a[w + 1] |= value >>> (64 - shift);
+            }
+            return pos + n;
+        }
+
+        private static long get(long[] a, long pos, int n) {
+            int w = (int) (pos >>> 6);
+            int shift = (int) (pos & 63);
+            long value = a[w] >>> shift;
+            if (shift + n > 64) {
+                value |= a[w + 1] << (64 - shift);
+            }
+            return value & ((1L << n) - 1);
+        }
+    }
 }
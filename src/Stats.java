@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.PrintStream;
+
+/**
+ * Search statistics, counted per worker and added up by the solver
+ *
+ * Counting is enabled by running with -Dstats=true. The flag is a static final constant, so the JIT compiles the
+ * counting methods to nothing when it is disabled.
+ */
+public class Stats {
+    public static final boolean ENABLED = Boolean.getBoolean("stats"); // count the statistics
+
+    public enum Rule {
+        TA, TB, TC, IB, RA, RB, EA, SA, SB, SC, SD
+    }
+
+    private static final Rule[] RULES = Rule.values();
+
+    public final long[] rule_prunes; // rule_prunes[r]: branches pruned by the rule of ordinal r
+    public final long[] depth_nodes; // depth_nodes[k]: nodes expanded at depth k
+    public final long[] depth_branches; // depth_branches[k]: branches kept at depth k
+    public final long[] depth_rule_prunes; // depth_rule_prunes[k]: branches pruned by the rules at depth k
+    public final long[] depth_lb_prunes; // depth_lb_prunes[k]: branches pruned by the lower bound at depth k
+    public long n_probe_jzw; // probes by jzw
+    public long n_probe_sm2; // probes by sm2
+    public long n_improve_jzw; // probes by jzw finding a better solution
+    public long n_improve_sm2; // probes by sm2 finding a better solution
+
+    /**
+     * Create empty statistics
+     *
+     * @param max_depth maximum number of relocations
+     */
+    public Stats(int max_depth) {
+        int n_depths = ENABLED ? max_depth + 1 : 0;
+        this.rule_prunes = new long[ENABLED ? RULES.length : 0];
+        this.depth_nodes = new long[n_depths];
+        this.depth_branches = new long[n_depths];
+        this.depth_rule_prunes = new long[n_depths];
+        this.depth_lb_prunes = new long[n_depths];
+    }
+
+    /**
+     * Copy statistics
+     *
+     * @param other statistics to be copied
+     */
+    private Stats(Stats other) {
+        this.rule_prunes = other.rule_prunes.clone();
+        this.depth_nodes = other.depth_nodes.clone();
+        this.depth_branches = other.depth_branches.clone();
+        this.depth_rule_prunes = other.depth_rule_prunes.clone();
+        this.depth_lb_prunes = other.depth_lb_prunes.clone();
+        this.n_probe_jzw = other.n_probe_jzw;
+        this.n_probe_sm2 = other.n_probe_sm2;
+        this.n_improve_jzw = other.n_improve_jzw;
+        this.n_improve_sm2 = other.n_improve_sm2;
+    }
+
+    /**
+     * Copy the statistics
+     *
+     * @return statistics with the same counts, which are not changed by later merges
+     */
+    public Stats copy() {
+        return new Stats(this);
+    }
+
+    void node(int level) {
+        if (ENABLED) {
+            depth_nodes[level]++;
+        }
+    }
+
+    void branches(int level, int n_branches) {
+        if (ENABLED) {
+            depth_branches[level] += n_branches;
+        }
+    }
+
+    void rule(Rule rule, int level) {
+        if (ENABLED) {
+            rule_prunes[rule.ordinal()]++;
+            depth_rule_prunes[level]++;
+        }
+    }
+
+    void lb_prune(int level) {
+        if (ENABLED) {
+            depth_lb_prunes[level]++;
+        }
+    }
+
+    void probe_jzw(int len) {
+        if (ENABLED) {
+            n_probe_jzw++;
+            if (len != Integer.MAX_VALUE) {
+                n_improve_jzw++;
+            }
+        }
+    }
+
+    void probe_sm2(int len) {
+        if (ENABLED) {
+            n_probe_sm2++;
+            if (len != Integer.MAX_VALUE) {
+                n_improve_sm2++;
+            }
+        }
+    }
+
+    /**
+     * Add the statistics of a worker, or of a run whose maximum depth is not larger
+     *
+     * @param other statistics of a worker or run, which are reset
+     */
+    void merge(Stats other) {
+        if (ENABLED) {
+            add(rule_prunes, other.rule_prunes);
+            add(depth_nodes, other.depth_nodes);
+            add(depth_branches, other.depth_branches);
+            add(depth_rule_prunes, other.depth_rule_prunes);
+            add(depth_lb_prunes, other.depth_lb_prunes);
+            n_probe_jzw += other.n_probe_jzw;
+            n_probe_sm2 += other.n_probe_sm2;
+            n_improve_jzw += other.n_improve_jzw;
+            n_improve_sm2 += other.n_improve_sm2;
+            other.n_probe_jzw = 0;
+            other.n_probe_sm2 = 0;
+            other.n_improve_jzw = 0;
+            other.n_improve_sm2 = 0;
+        }
+    }
+
+    private static void add(long[] sum, long[] other) {
+        for (int i = 0; i < other.length; i++) { // sum is at least as long, e.g., with a deeper maximum depth
+            sum[i] += other[i];
+            other[i] = 0;
+        }
+    }
+
+    /**
+     * Get the average number of branches kept per node expanded at a depth
+     *
+     * @param level depth
+     * @return branching factor, 0 if no node is expanded at the depth
+     */
+    public double branching_factor(int level) {
+        return depth_nodes[level] == 0 ? 0 : (double) depth_branches[level] / depth_nodes[level];
+    }
+
+    /**
+     * Print the statistics
+     *
+     * @param ps print stream
+     */
+    public void print(PrintStream ps) {
+        if (!ENABLED) {
+            return;
+        }
+        for (Rule rule : RULES) {
+            ps.printf("[stats] rule %s: %d\n", rule, rule_prunes[rule.ordinal()]);
+        }
+        ps.printf("[stats] probe jzw: %d / %d, sm2: %d / %d\n", n_improve_jzw, n_probe_jzw, n_improve_sm2, n_probe_sm2);
+        for (int k = 0; k < depth_nodes.length; k++) {
+            if (depth_nodes[k] > 0) {
+                ps.printf("[stats] depth %d: nodes = %d / branches = %d (%.2f) / rule prunes = %d / lb prunes = %d\n", k, depth_nodes[k], depth_branches[k], branching_factor(k), depth_rule_prunes[k], depth_lb_prunes[k]);
+            }
+        }
+    }
+}
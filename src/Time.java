@@ -20,9 +20,18 @@ public class Time {
     /**
      * Get the current time
      *
-     * @return current timestamp in seconds
+     * @return current timestamp in seconds, only meaningful relative to another timestamp
      */
     public static double get_time() {
-        return System.currentTimeMillis() * 0.001;
+        return System.nanoTime() * 1e-9;
+    }
+
+    /**
+     * Get the current time in nanoseconds, cheaper and more accurate than get_time for deadlines
+     *
+     * @return current timestamp in nanoseconds, to be compared with another one by the sign of their difference
+     */
+    public static long get_nanos() {
+        return System.nanoTime();
     }
 }
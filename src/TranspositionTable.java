@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+public class TranspositionTable {
+
+    public enum Policy {
+        ALWAYS, // a new entry always replaces the old one
+        DEPTH, // a new entry replaces the old one only if its depth is not smaller
+        TWO_TIER // each bucket keeps a depth-preferred entry and an always-replaced entry
+    }
+
+    private final Policy policy;
+    private final int mask; // number of buckets minus one
+    private final int bucket_size; // number of entries per bucket
+    private final long[] table; // table[2 * e]: key ^ depth, table[2 * e + 1]: depth of entry e (torn entries do not verify)
+
+    /**
+     * Create a transposition table shared by all workers without locking
+     *
+     * @param size_mb memory cap in megabytes
+     * @param policy  replacement policy
+     */
+    public TranspositionTable(int size_mb, Policy policy) {
+        this.policy = policy;
+        this.bucket_size = policy == Policy.TWO_TIER ? 2 : 1;
+        long n_entries = ((long) size_mb << 20) / 16;
+        int n_buckets = Integer.highestOneBit((int) Math.max(1, Math.min(n_entries / bucket_size, 1 << 30)));
+        this.mask = n_buckets - 1;
+        this.table = new long[2 * n_buckets * bucket_size];
+    }
+
+    /**
+     * Get the largest number of remaining relocations proved to be insufficient for a configuration
+     *
+     * @param key hash of the configuration
+     * @return depth stored for the configuration, or 0 if there is none
+     */
+    public int probe(long key) {
+        int e = ((int) key & mask) * bucket_size;
+        int depth = 0;
+        for (int i = e; i < e + bucket_size; i++) {
+            long data = table[2 * i + 1];
+            if ((table[2 * i] ^ data) == key) {
+                depth = Math.max(depth, (int) data);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Record that a configuration cannot be solved within a number of remaining relocations
+     *
+     * @param key   hash of the configuration
+     * @param depth number of remaining relocations proved to be insufficient
+     */
+    public void store(long key, int depth) {
+        int e = ((int) key & mask) * bucket_size;
+        switch (policy) {
+            case ALWAYS:
+                write(e, key, depth);
+                break;
+            case DEPTH:
+                if (matches(e, key)) {
+                    write(e, key, Math.max(depth, depth(e)));
+                } else if (depth >= depth(e)) {
+                    write(e, key, depth);
+                }
+                break;
+            case TWO_TIER:
+                if (matches(e, key)) {
+                    write(e, key, Math.max(depth, depth(e)));
+                } else if (depth >= depth(e)) {
+                    if (depth(e) > 0) {
+                        write(e + 1, table[2 * e] ^ table[2 * e + 1], depth(e)); // demote the old deep entry
+                    }
+                    write(e, key, depth);
+                } else {
+                    write(e + 1, key, matches(e + 1, key) ? Math.max(depth, depth(e + 1)) : depth);
+                }
+                break;
+        }
+    }
+
+    private boolean matches(int e, long key) {
+        return (table[2 * e] ^ table[2 * e + 1]) == key;
+    }
+
+    private int depth(int e) {
+        return (int) table[2 * e + 1];
+    }
+
+    private void write(int e, long key, int depth) {
+        table[2 * e] = key ^ depth;
+        table[2 * e + 1] = depth;
+    }
+}
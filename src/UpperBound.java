@@ -24,21 +24,22 @@ public class UpperBound {
 
         int n_stacks = state.n_stacks;
         int n_tiers = state.n_tiers;
+        int stride = state.stride;
         int[] h = state.h;
-        int[][] p = state.p;
-        int[][] q = state.q;
-        int[][] b = state.b;
+        int[] p = state.p;
+        int[] q = state.q;
+        int[] b = state.b;
 
         while (state.n_bad > 0) {
             while (state.is_retrievable()) {
                 state.retrieve(len);
             }
 
-            int q_min = q[state.s_min][h[state.s_min]];
+            int q_min = q[state.s_min * stride + h[state.s_min]];
             int src = -1;
             for (int s = 0; s < n_stacks; s++) {
                 int n_empty_slots = (n_stacks - 1) * n_tiers - (state.n_blocks - h[s]);
-                if (q[s][h[s]] == q_min && b[s][h[s]] <= n_empty_slots && (src == -1 || b[src][h[src]] > b[s][h[s]])) {
+                if (q[s * stride + h[s]] == q_min && b[s * stride + h[s]] <= n_empty_slots && (src == -1 || b[src * stride + h[src]] > b[s * stride + h[s]])) {
                     src = s;
                 }
             }
@@ -48,7 +49,7 @@ public class UpperBound {
 
             int dst = -1;
             for (int s = 0; s < n_stacks; s++) {
-                if (s != src && h[s] < n_tiers && p[src][h[src]] <= q[s][h[s]] && (dst == -1 || q[dst][h[dst]] > q[s][h[s]])) {
+                if (s != src && h[s] < n_tiers && p[src * stride + h[src]] <= q[s * stride + h[s]] && (dst == -1 || q[dst * stride + h[dst]] > q[s * stride + h[s]])) {
                     dst = s;
                 }
             }
@@ -57,7 +58,7 @@ public class UpperBound {
                 if (h[dst] < n_tiers - 1) {
                     int s_pre = -1;
                     for (int s = 0; s < n_stacks; s++) {
-                        if (s != src && s != dst && b[s][h[s]] > 0 && p[src][h[src]] <= p[s][h[s]] && p[s][h[s]] <= q[dst][h[dst]] && (s_pre == -1 || p[s_pre][h[s_pre]] < p[s][h[s]])) {
+                        if (s != src && s != dst && b[s * stride + h[s]] > 0 && p[src * stride + h[src]] <= p[s * stride + h[s]] && p[s * stride + h[s]] <= q[dst * stride + h[dst]] && (s_pre == -1 || p[s_pre * stride + h[s_pre]] < p[s * stride + h[s]])) {
                             s_pre = s;
                         }
                     }
@@ -74,10 +75,10 @@ public class UpperBound {
                 int s_sec = -1;
                 for (int s = 0; s < n_stacks; s++) {
                     if (s != src && h[s] < n_tiers) {
-                        if (s_max == -1 || q[s_max][h[s_max]] < q[s][h[s]]) {
+                        if (s_max == -1 || q[s_max * stride + h[s_max]] < q[s * stride + h[s]]) {
                             s_sec = s_max;
                             s_max = s;
-                        } else if (s_sec == -1 || q[s_sec][h[s_sec]] < q[s][h[s]]) {
+                        } else if (s_sec == -1 || q[s_sec * stride + h[s_sec]] < q[s * stride + h[s]]) {
                             s_sec = s;
                         }
                     }
@@ -85,7 +86,7 @@ public class UpperBound {
 
                 int s_opt = -1;
                 for (int s = 0; s < n_stacks; s++) {
-                    if (s != src && h[s] > 0 && b[s][h[s]] == 0 && (s != s_max && p[s][h[s]] <= q[s_max][h[s_max]] || s == s_max && s_sec != -1 && p[s][h[s]] <= q[s_sec][h[s_sec]]) && p[src][h[src]] <= q[s][h[s] - 1] && (s_opt == -1 || p[s_opt][h[s_opt]] < p[s][h[s]])) {
+                    if (s != src && h[s] > 0 && b[s * stride + h[s]] == 0 && (s != s_max && p[s * stride + h[s]] <= q[s_max * stride + h[s_max]] || s == s_max && s_sec != -1 && p[s * stride + h[s]] <= q[s_sec * stride + h[s_sec]]) && p[src * stride + h[src]] <= q[s * stride + h[s] - 1] && (s_opt == -1 || p[s_opt * stride + h[s_opt]] < p[s * stride + h[s]])) {
                         s_opt = s;
                     }
                 }
@@ -93,7 +94,7 @@ public class UpperBound {
                 if (s_opt != -1) {
                     src = s_opt;
                     for (int s = 0; s < n_stacks; s++) {
-                        if (s != src && h[s] < n_tiers && p[src][h[src]] <= q[s][h[s]] && (dst == -1 || q[dst][h[dst]] > q[s][h[s]])) {
+                        if (s != src && h[s] < n_tiers && p[src * stride + h[src]] <= q[s * stride + h[s]] && (dst == -1 || q[dst * stride + h[dst]] > q[s * stride + h[s]])) {
                             dst = s;
                         }
                     }
@@ -101,7 +102,7 @@ public class UpperBound {
                     if (h[dst] < n_tiers - 1) {
                         int s_pre = -1;
                         for (int s = 0; s < n_stacks; s++) {
-                            if (s != src && s != dst && b[s][h[s]] > 0 && p[src][h[src]] <= p[s][h[s]] && p[s][h[s]] <= q[dst][h[dst]] && (s_pre == -1 || p[s_pre][h[s_pre]] < p[s][h[s]])) {
+                            if (s != src && s != dst && b[s * stride + h[s]] > 0 && p[src * stride + h[src]] <= p[s * stride + h[s]] && p[s * stride + h[s]] <= q[dst * stride + h[dst]] && (s_pre == -1 || p[s_pre * stride + h[s_pre]] < p[s * stride + h[s]])) {
                                 s_pre = s;
                             }
                         }
@@ -113,8 +114,8 @@ public class UpperBound {
                     dst = s_max;
                     if (h[dst] == n_tiers - 1) {
                         boolean smallest = true;
-                        for (int k = 1; k < b[src][h[src]]; k++) {
-                            if (p[src][h[src] - k] < p[src][h[src]]) {
+                        for (int k = 1; k < b[src * stride + h[src]]; k++) {
+                            if (p[src * stride + h[src] - k] < p[src * stride + h[src]]) {
                                 smallest = false;
                                 break;
                             }
@@ -127,7 +128,7 @@ public class UpperBound {
             }
 
             if (path != null) {
-                path[len] = new Move(p[src][h[src]], src, dst);
+                path[len] = new Move(p[src * stride + h[src]], src, dst);
             }
             state.relocate(src, dst, ++len);
         }
@@ -142,21 +143,22 @@ public class UpperBound {
 
         int n_stacks = state.n_stacks;
         int n_tiers = state.n_tiers;
+        int stride = state.stride;
         int[] h = state.h;
-        int[][] p = state.p;
-        int[][] q = state.q;
-        int[][] b = state.b;
+        int[] p = state.p;
+        int[] q = state.q;
+        int[] b = state.b;
 
         while (state.n_bad > 0) {
             while (state.is_retrievable()) {
                 state.retrieve(len);
             }
 
-            int q_min = q[state.s_min][h[state.s_min]];
+            int q_min = q[state.s_min * stride + h[state.s_min]];
             int src = -1;
             for (int s = 0; s < n_stacks; s++) {
                 int n_empty_slots = (n_stacks - 1) * n_tiers - (state.n_blocks - h[s]);
-                if (q[s][h[s]] == q_min && b[s][h[s]] <= n_empty_slots && (src == -1 || b[src][h[src]] > b[s][h[s]])) {
+                if (q[s * stride + h[s]] == q_min && b[s * stride + h[s]] <= n_empty_slots && (src == -1 || b[src * stride + h[src]] > b[s * stride + h[s]])) {
                     src = s;
                 }
             }
@@ -168,9 +170,9 @@ public class UpperBound {
             int best_diff = Integer.MAX_VALUE;
 
             for (int from = 0; from < n_stacks; from++) {
-                if (b[from][h[from]] > 0) {
+                if (b[from * stride + h[from]] > 0) {
                     for (int to = 0; to < n_stacks; to++) {
-                        int diff = q[to][h[to]] - p[from][h[from]];
+                        int diff = q[to * stride + h[to]] - p[from * stride + h[from]];
                         if (from != to && h[to] < n_tiers && diff >= 0 && diff < best_diff) {
                             src = from;
                             dst = to;
@@ -186,15 +188,15 @@ public class UpperBound {
                 }
 
                 for (int from = 0; from < n_stacks; from++) {
-                    if (b[from][h[from]] == 0) {
+                    if (b[from * stride + h[from]] == 0) {
                         int s_bad = -1;
                         int s_bad_alt = -1;
                         for (int s = 0; s < n_stacks; s++) {
-                            if (b[s][h[s]] > 0 && p[s][h[s]] <= q[from][h[from] - 1]) {
-                                if (s_bad == -1 || p[s_bad][h[s_bad]] < p[s][h[s]]) {
+                            if (b[s * stride + h[s]] > 0 && p[s * stride + h[s]] <= q[from * stride + h[from] - 1]) {
+                                if (s_bad == -1 || p[s_bad * stride + h[s_bad]] < p[s * stride + h[s]]) {
                                     s_bad_alt = s_bad;
                                     s_bad = s;
-                                } else if (s_bad_alt == -1 || p[s_bad_alt][h[s_bad_alt]] < p[s][h[s]]) {
+                                } else if (s_bad_alt == -1 || p[s_bad_alt * stride + h[s_bad_alt]] < p[s * stride + h[s]]) {
                                     s_bad_alt = s;
                                 }
                             }
@@ -204,11 +206,11 @@ public class UpperBound {
                             int to = -1;
                             int to_alt = -1;
                             for (int s = 0; s < n_stacks; s++) {
-                                if (s != from && h[s] < n_tiers && p[from][h[from]] <= q[s][h[s]]) {
-                                    if (to == -1 || q[to][h[to]] > q[s][h[s]]) {
+                                if (s != from && h[s] < n_tiers && p[from * stride + h[from]] <= q[s * stride + h[s]]) {
+                                    if (to == -1 || q[to * stride + h[to]] > q[s * stride + h[s]]) {
                                         to_alt = to;
                                         to = s;
-                                    } else if (to_alt == -1 || q[to_alt][h[to_alt]] > q[s][h[s]]) {
+                                    } else if (to_alt == -1 || q[to_alt * stride + h[to_alt]] > q[s * stride + h[s]]) {
                                         to_alt = s;
                                     }
                                 }
@@ -216,7 +218,7 @@ public class UpperBound {
 
                             if (to != -1) {
                                 if (s_bad != to) {
-                                    int diff = q[from][h[from] - 1] - p[s_bad][h[s_bad]] + q[to][h[to]] - p[from][h[from]];
+                                    int diff = q[from * stride + h[from] - 1] - p[s_bad * stride + h[s_bad]] + q[to * stride + h[to]] - p[from * stride + h[from]];
                                     if (diff < best_diff) {
                                         src = from;
                                         dst = to;
@@ -224,7 +226,7 @@ public class UpperBound {
                                     }
                                 } else {
                                     if (s_bad_alt != -1) {
-                                        int diff = q[from][h[from] - 1] - p[s_bad_alt][h[s_bad_alt]] + q[to][h[to]] - p[from][h[from]];
+                                        int diff = q[from * stride + h[from] - 1] - p[s_bad_alt * stride + h[s_bad_alt]] + q[to * stride + h[to]] - p[from * stride + h[from]];
                                         if (diff < best_diff) {
                                             src = from;
                                             dst = to;
@@ -232,7 +234,7 @@ public class UpperBound {
                                         }
                                     }
                                     if (to_alt != -1) {
-                                        int diff = q[from][h[from] - 1] - p[s_bad][h[s_bad]] + q[to_alt][h[to_alt]] - p[from][h[from]];
+                                        int diff = q[from * stride + h[from] - 1] - p[s_bad * stride + h[s_bad]] + q[to_alt * stride + h[to_alt]] - p[from * stride + h[from]];
                                         if (diff < best_diff) {
                                             src = from;
                                             dst = to;
@@ -247,7 +249,7 @@ public class UpperBound {
 
                 if (dst == -1) {
                     for (int s = 0; s < n_stacks; s++) {
-                        if (s != src && h[s] < n_tiers && (dst == -1 || q[dst][h[dst]] < q[s][h[s]])) {
+                        if (s != src && h[s] < n_tiers && (dst == -1 || q[dst * stride + h[dst]] < q[s * stride + h[s]])) {
                             dst = s;
                         }
                     }
@@ -255,7 +257,7 @@ public class UpperBound {
             }
 
             if (path != null) {
-                path[len] = new Move(p[src][h[src]], src, dst);
+                path[len] = new Move(p[src * stride + h[src]], src, dst);
             }
             state.relocate(src, dst, ++len);
         }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Validator {
+
+    /**
+     * Replay a solution on an instance, where every block that becomes retrievable is retrieved before the next
+     * relocation, and check that the bay is cleared
+     *
+     * @param inst  instance
+     * @param moves relocations
+     * @param len   number of relocations
+     * @return number of verified relocations, i.e., len
+     * @throws IllegalArgumentException fewer than len relocations are given, a relocation is illegal or the bay is not
+     *                                  cleared at the end
+     */
+    public static int verify(Instance inst, Move[] moves, int len) {
+        if (len < 0 || moves == null && len > 0 || moves != null && moves.length < len) {
+            throw new IllegalArgumentException((moves == null ? 0 : moves.length) + " moves for a solution of length " + len);
+        }
+        State state = State.initialize(inst); // replaying needs no hashes
+        int n_stacks = state.n_stacks;
+        int stride = state.stride;
+        int[] h = state.h;
+        int[] p = state.p;
+
+        for (int i = 0; i < len; i++) {
+            while (state.is_retrievable()) {
+                state.retrieve(i);
+            }
+
+            Move move = moves[i];
+            if (move == null || move.s < 0 || move.s >= n_stacks || move.d < 0 || move.d >= n_stacks || move.s == move.d) {
+                throw new IllegalArgumentException("move " + i + ": invalid stacks");
+            }
+            if (h[move.s] == 0) {
+                throw new IllegalArgumentException("move " + i + ": stack " + move.s + " is empty");
+            }
+            if (p[move.s * stride + h[move.s]] != move.p) {
+                throw new IllegalArgumentException("move " + i + ": top of stack " + move.s + " is " + p[move.s * stride + h[move.s]] + ", not " + move.p);
+            }
+            if (h[move.d] == state.n_tiers) {
+                throw new IllegalArgumentException("move " + i + ": stack " + move.d + " is full");
+            }
+            state.relocate(move.s, move.d, i + 1);
+        }
+
+        while (state.is_retrievable()) {
+            state.retrieve(len);
+        }
+        if (state.n_blocks > 0) {
+            throw new IllegalArgumentException(state.n_blocks + " blocks left after " + len + " moves");
+        }
+        return len;
+    }
+
+    /**
+     * Verify solutions in parallel, where the pairs are split into one contiguous range per thread
+     *
+     * @param insts     instances
+     * @param sols      solutions, one per instance, where null stands for no solution
+     * @param n_threads number of threads
+     * @return number of verified relocations per solution, or -1 if the solution is missing or invalid
+     * @throws InterruptedException interrupted while waiting for results
+     */
+    public static int[] verify(List<Instance> insts, List<Move[]> sols, int n_threads) throws InterruptedException {
+        int n = insts.size();
+        int[] counts = new int[n];
+        int n_ranges = Math.max(1, Math.min(n_threads, n));
+        ExecutorService executor = Executors.newFixedThreadPool(n_ranges);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int k = 0; k < n_ranges; k++) {
+                int from = (int) ((long) n * k / n_ranges);
+                int to = (int) ((long) n * (k + 1) / n_ranges);
+                tasks.add(() -> {
+                    for (int i = from; i < to; i++) {
+                        Instance inst = insts.get(i);
+                        Move[] sol = sols.get(i);
+                        if (sol == null) {
+                            counts[i] = -1;
+                            continue;
+                        }
+                        try {
+                            counts[i] = verify(inst, sol, sol.length);
+                        } catch (IllegalArgumentException e) {
+                            counts[i] = -1;
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // verify catches the errors of invalid solutions
+        } finally {
+            executor.shutdown();
+        }
+        return counts;
+    }
+}
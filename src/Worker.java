@@ -0,0 +1,779 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+public class Worker {
+
+    /**
+     * Subtree searched by another worker of the fork-join pool
+     *
+     * Only the branches leading to the subtree are kept until the task runs, when a spare worker of the pool replays
+     * them from the root, so that waiting tasks do not hold a worker each.
+     */
+    public static class Task extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final Algorithm algo;
+        private final Worker worker; // worker positioned at the subtree, or null to take a spare one
+        private final long[] keys; // keys[k]: key of the branch leading to the subtree at level k
+        private final int level;
+        private final int max_depth;
+        private final long[] frontier; // frontier to resume from below the subtree
+        private final int frontier_len;
+        private int anchor = Integer.MAX_VALUE; // earliest relocation time that pruning in the subtree depended on
+
+        /**
+         * Create a task searching from the current node of a worker
+         *
+         * @param worker worker, which searches the subtree itself
+         * @param level  number of relocations performed so far
+         */
+        public Task(Worker worker, int level) {
+            this.algo = worker.algo;
+            this.worker = worker;
+            this.keys = null;
+            this.level = level;
+            this.max_depth = worker.path.length;
+            this.frontier = null;
+            this.frontier_len = 0;
+        }
+
+        /**
+         * Create a task searching a subtree below the current node of a worker
+         *
+         * @param parent worker whose branches lead to the subtree
+         * @param keys   keys[k]: key of the branch leading to the subtree at level k
+         */
+        private Task(Worker parent, long[] keys) {
+            this.algo = parent.algo;
+            this.worker = null;
+            this.keys = keys;
+            this.level = keys.length;
+            this.max_depth = parent.path.length;
+            this.frontier = parent.frontier;
+            this.frontier_len = parent.frontier_len;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (worker != null) {
+                boolean done = worker.search(level);
+                worker.flush();
+                anchor = worker.anchor;
+                return done;
+            }
+
+            Worker spare = algo.spare_workers.poll();
+            if (spare == null) {
+                spare = new Worker(algo, algo.pool_root.copy(), max_depth);
+            }
+            int mark = spare.state.mark();
+            for (int k = 0; k < level; k++) {
+                spare.snapshot(k);
+                spare.branches[k][0] = keys[k]; // the branches above the subtree, for the tasks of the deeper levels
+                spare.cursor[k] = 0;
+                spare.descend(k, keys[k]);
+            }
+            spare.frontier = frontier;
+            spare.frontier_len = frontier_len;
+            boolean done = spare.search(level);
+            spare.state.undo(mark);
+            spare.flush();
+            anchor = spare.anchor;
+            spare.anchor = Integer.MAX_VALUE;
+            spare.frontier_len = 0;
+            algo.spare_workers.add(spare);
+            return done;
+        }
+    }
+
+    private final Algorithm algo; // shared bounds, limits and counters
+
+    private final int n_stacks;
+    private final int n_tiers;
+    private final int max_prio;
+
+    private final Move[] path;
+    private final State state; // the only state mutated in place by this worker
+    private final int[][] hist_h; // hist_h[k][s]: height of stack s at level k
+    private final int[][] hist_q; // hist_q[k][s]: quality of the topmost slot of stack s at level k
+    private final LowerBound bound; // lower bound of this worker with its own statistics
+    private final Stats stats; // search statistics of this worker since the last flush
+
+    /*
+     * Branches of each level, sorted as packed keys: child_lb (bits 48-62), q_dst (bits 32-47), q_src (bits 16-31)
+     * and src * n_stacks + dst (bits 0-15), whose limits are checked by Algorithm.solve
+     */
+    private final long[][] branches; // branches[k][i]: key of the i-th branch at level k
+    private final int[] cursor; // cursor[k]: index of the branch searched at level k
+
+    /*
+     * Branches to resume from, which follow all the branches searched before the checkpoint in the sorted order
+     */
+    private long[] frontier; // frontier[k]: key of the branch to resume from at level k
+    private int frontier_len; // number of levels of the frontier not yet resumed
+    private boolean checkpoint_due; // set by tick when a checkpoint should be written at the current node
+
+    /*
+     * Scratch arrays for preparing the rules, only used before descending
+     */
+    private final int[] min_last_change_left;
+    private final int[] max_last_move_out_right;
+    private final int[] max_group_src_right;
+    private final int[] max_group_src_temp_offset;
+    private final int[] max_group_dst_right;
+
+    private int anchor = Integer.MAX_VALUE; // earliest relocation time that pruning in the current subtree depends on
+
+    private static final long MIN_CYCLE = 16; // fewest nodes between two checks of the time limit
+    private static final long MAX_CYCLE = 1 << 24; // most nodes between two checks of the time limit
+
+    private long n_timer; // nodes since the last check of the time limit
+    private long cycle = MIN_CYCLE; // nodes between two checks of the time limit, adapted to the node rate
+    private long last_check = Time.get_nanos(); // time of the last check of the time limit
+    private long n_nodes; // nodes explored since the last flush
+    private long n_probe; // nodes probed since the last flush
+    private long n_tt_hits; // transposition table hits since the last flush
+    private long n_tt_misses; // transposition table misses since the last flush
+
+    /**
+     * Create a worker searching from the root state
+     *
+     * @param algo       shared search data
+     * @param root_state root state, mutated in place during the search
+     * @param max_depth  maximum number of relocations
+     */
+    public Worker(Algorithm algo, State root_state, int max_depth) {
+        this.algo = algo;
+        this.n_stacks = root_state.n_stacks;
+        this.n_tiers = root_state.n_tiers;
+        this.max_prio = algo.max_prio;
+        this.path = new Move[max_depth];
+        this.state = root_state;
+        this.hist_h = new int[max_depth + 1][n_stacks];
+        this.hist_q = new int[max_depth + 1][n_stacks];
+        this.bound = LowerBound.create(algo.config.lower_bound);
+        this.stats = new Stats(max_depth);
+        this.branches = new long[max_depth + 1][n_stacks * n_stacks];
+        this.cursor = new int[max_depth + 1];
+        this.min_last_change_left = new int[n_stacks];
+        this.max_last_move_out_right = new int[n_stacks];
+        this.max_group_src_right = new int[n_stacks];
+        this.max_group_src_temp_offset = new int[max_prio + 1];
+        this.max_group_dst_right = new int[n_stacks];
+    }
+
+    /**
+     * Add the counters of this worker to the shared ones
+     */
+    public void flush() {
+        algo.n_nodes.add(n_nodes);
+        algo.n_probe.add(n_probe);
+        algo.n_tt_hits.add(n_tt_hits);
+        algo.n_tt_misses.add(n_tt_misses);
+        algo.merge_bound(bound, stats);
+        n_nodes = 0;
+        n_probe = 0;
+        n_tt_hits = 0;
+        n_tt_misses = 0;
+    }
+
+    /**
+     * Count a node and check cancellation and time limit
+     *
+     * @return true if the search should stop
+     */
+    boolean tick() {
+        n_nodes++;
+
+        if (algo.stop) {
+            return true;
+        }
+        if (++n_timer >= cycle) {
+            n_timer = 0;
+            flush();
+            long now = Time.get_nanos();
+            if (now - algo.deadline >= 0) {
+                algo.stop = true;
+                checkpoint_due = algo.checkpointing();
+                return true;
+            }
+
+            /*
+             * Aim at one check per check interval, changing the cycle by at most a factor of two at a time
+             */
+            long target = cycle * algo.check_nanos / Math.max(1, now - last_check);
+            cycle = Math.max(MIN_CYCLE, Math.min(MAX_CYCLE, Math.max(cycle / 2, Math.min(cycle * 2, target))));
+            last_check = now;
+
+            algo.progress(now);
+            checkpoint_due = algo.checkpointing() && now - algo.next_checkpoint >= 0;
+        }
+        return false;
+    }
+
+    /**
+     * Resume the next search from a frontier saved by a checkpoint
+     *
+     * @param frontier key of the branch to resume from at each level
+     */
+    void resume(long[] frontier) {
+        this.frontier = frontier;
+        this.frontier_len = frontier.length;
+    }
+
+    /**
+     * Get the frontier of the current node for a checkpoint
+     *
+     * @param level number of relocations performed so far
+     * @return key of the branch searched at each level above the current node
+     */
+    private long[] frontier(int level) {
+        long[] keys = new long[level];
+        for (int k = 0; k < level; k++) {
+            keys[k] = branches[k][cursor[k]];
+        }
+        return keys;
+    }
+
+    /**
+     * Record heights and top qualities of the current state for Rules 5 (RA) and 6 (RB)
+     *
+     * @param level number of relocations performed so far
+     */
+    void snapshot(int level) {
+        int stride = state.stride;
+        int[] curr_h = hist_h[level];
+        int[] curr_q = hist_q[level];
+        for (int s = 0; s < n_stacks; s++) {
+            curr_h[s] = state.h[s];
+            curr_q[s] = state.q[s * stride + state.h[s]];
+        }
+    }
+
+    /**
+     * Get a branch generated by expand
+     *
+     * @param level number of relocations performed so far
+     * @param i     index of the branch
+     * @return key of the branch
+     */
+    long branch(int level, int i) {
+        return branches[level][i];
+    }
+
+    /**
+     * Perform the relocation of a branch followed by its retrievals
+     *
+     * @param level number of relocations performed so far
+     * @param key   key of the branch, of which only the stacks are used
+     * @return mark to undo the relocation and its retrievals
+     */
+    int descend(int level, long key) {
+        int src = (int) (key & 0xffff) / n_stacks;
+        int dst = (int) (key & 0xffff) % n_stacks;
+        path[level] = algo.move(state.p[src * state.stride + state.h[src]], src, dst);
+
+        int mark = state.mark();
+        state.apply_relocate(src, dst, level + 1);
+        while (state.is_retrievable()) {
+            state.apply_retrieve(level + 1);
+        }
+        return mark;
+    }
+
+    /**
+     * Undo relocations and retrievals
+     *
+     * @param mark mark returned by descend
+     */
+    void ascend(int mark) {
+        state.undo(mark);
+    }
+
+    /**
+     * Depth-first search below the current state
+     *
+     * @param level number of relocations performed so far
+     * @return true if the search should stop
+     */
+    public boolean search(int level) {
+        /*
+         * Check cancellation and time limit, and save the progress if it is due, with the frontier only known to a
+         * sequential search
+         */
+        boolean stop = tick();
+        if (checkpoint_due) {
+            checkpoint_due = false;
+            algo.checkpoint(algo.pool == null ? frontier(level) : new long[0]);
+        }
+        if (stop) {
+            return true;
+        }
+
+        /*
+         * Track the earliest relocation time that pruning below this node depends on
+         */
+        int outer_anchor = anchor;
+        anchor = Integer.MAX_VALUE;
+
+        /*
+         * Non-dominated branches within the current depth
+         */
+        int n_branches = expand(level, algo.best_lb, true);
+        if (n_branches < 0) {
+            return true;
+        }
+
+        /*
+         * Depth-first search
+         */
+        if (n_branches > 0) {
+            /*
+             * Near the root, hand the subtrees over to the fork-join pool
+             */
+            ArrayList<Task> tasks = level < algo.config.split_depth && algo.pool != null ? new ArrayList<>() : null;
+
+            /*
+             * When resuming, skip the branches searched before the checkpoint; the deeper levels of the frontier
+             * only apply if its branch at this level is still generated
+             */
+            int first = 0;
+            if (level < frontier_len) {
+                while (first < n_branches && branches[level][first] < frontier[level]) {
+                    first++;
+                }
+                if (first == n_branches || branches[level][first] != frontier[level]) {
+                    frontier_len = level;
+                }
+            }
+
+            for (int i = first; i < n_branches; i++) {
+                /*
+                 * Redo the relocation and its retrievals, which are known to be non-dominated
+                 */
+                cursor[level] = i;
+                if (tasks != null) {
+                    tasks.add(new Task(this, frontier(level + 1)));
+                    frontier_len = 0; // only the subtree of the first branch resumes the deeper levels
+                    continue;
+                }
+                int mark = descend(level, branches[level][i]);
+
+                boolean done = search(level + 1);
+                frontier_len = 0; // the frontier is resumed once the subtree of its first branch is searched
+                state.undo(mark);
+                if (done) {
+                    return true;
+                }
+            }
+
+            if (tasks != null) {
+                boolean done = false;
+                for (Task task : ForkJoinTask.invokeAll(tasks)) {
+                    done |= task.join();
+                    anchor = Math.min(anchor, task.anchor);
+                }
+                if (done) {
+                    return true;
+                }
+            }
+        }
+
+        /*
+         * The configuration cannot be solved within the remaining relocations, which holds for any history
+         * unless pruning below this node depended on relocations performed before it
+         */
+        if (algo.tt != null && anchor > level) {
+            algo.tt.store(state.hash(), algo.best_lb - level);
+        }
+        anchor = Math.min(outer_anchor, anchor);
+
+        return false;
+    }
+
+    /**
+     * Generate the non-dominated branches of the current state whose children may be solved within a number of
+     * relocations, sorted by child lower bound and then by qualities of the destination and source stacks
+     *
+     * @param level number of relocations performed so far
+     * @param limit largest number of relocations of interest, children above it are pruned
+     * @param probe true to run the heuristics from children one relocation below the limit
+     * @return number of branches, or -1 if the search should stop
+     */
+    int expand(int level, int limit, boolean probe) {
+        /*
+         * Current state
+         */
+        State curr_state = state;
+        int stride = curr_state.stride;
+
+        /*
+         * Record heights and top qualities for Rules 5 (RA) and 6 (RB)
+         */
+        snapshot(level);
+        int[] curr_q = hist_q[level];
+        stats.node(level);
+
+        /*
+         * Prepare Rule 3 (TC)
+         *
+         * min_last_change_left[s] = min{last_change_time[s'] | s' < s && h[s'] < n_tiers}
+         */
+        int min_last_change_temp = Integer.MAX_VALUE;
+        for (int s = 0; s < n_stacks; s++) {
+            min_last_change_left[s] = min_last_change_temp;
+            if (curr_state.h[s] < n_tiers) {
+                min_last_change_temp = Math.min(min_last_change_temp, curr_state.last_change_time[s]);
+            }
+        }
+
+        /*
+         * Prepare Rule 4 (IB)
+         *
+         * max_last_move_out_right[s] = max{last_move_out_time[s'] | s' > s}
+         */
+        int max_last_move_out_temp = 0;
+        for (int s = n_stacks - 1; s >= 0; s--) {
+            max_last_move_out_right[s] = max_last_move_out_temp;
+            max_last_move_out_temp = Math.max(max_last_move_out_temp, curr_state.last_move_out_time[s]);
+        }
+
+        /*
+         * Prepare Rule 10 (SC)
+         *
+         * max_group_src_right[s] = max{k | pk == p[s][h[s]] && sk > s && last_change_type[sk] == MOVE_OUT}
+         */
+        int min_prio = curr_state.q[curr_state.s_min * stride + curr_state.h[curr_state.s_min]];
+        Arrays.fill(max_group_src_temp_offset, 0, max_prio - min_prio, 0);
+        for (int s = n_stacks - 1; s >= 0; s--) {
+            max_group_src_right[s] = curr_state.h[s] == 0 ? 0 : max_group_src_temp_offset[curr_state.p[s * stride + curr_state.h[s]] - min_prio - 1];
+            if (curr_state.last_change_type[s] == Type.MOVE_OUT) {
+                int k = curr_state.last_change_time[s];
+                int pk = path[k - 1].p;
+                if (pk > min_prio) {
+                    max_group_src_temp_offset[pk - min_prio - 1] = Math.max(max_group_src_temp_offset[pk - min_prio - 1], k);
+                }
+            }
+        }
+
+        /*
+         * Prepare branching
+         */
+        long[] keys = branches[level];
+        int n_branches = 0;
+
+        /*
+         * Enumerate source stack
+         */
+        for (int sn = 0; sn < n_stacks; sn++) {
+            /*
+             * Check feasibility
+             */
+            if (curr_state.h[sn] == 0) {
+                continue;
+            }
+
+            int pn = curr_state.p[sn * stride + curr_state.h[sn]]; // priority value
+            int lv = curr_state.l[sn * stride + curr_state.h[sn]]; // last relocation time
+
+            if (lv > 0) {
+                int k = lv; // last time the block is relocated
+                int sk = path[k - 1].s;
+
+                /*
+                 * Check Rule 1 (TA)
+                 */
+                if (curr_state.last_change_time[sk] == k && curr_state.last_change_type[sk] == Type.MOVE_OUT) {
+                    anchor = Math.min(anchor, k);
+                    stats.rule(Stats.Rule.TA, level);
+                    continue; // TA: merge two relocations and perform later
+                }
+            }
+
+            /*
+             * Check Rule 3 (TC)
+             *
+             * if exists s' < sn such that h[s'] < n_tiers && last_change_time[s'] < k
+             *
+             * min_last_change_left[s] = min{last_change_time[s'] | s' < s && h[s'] < n_tiers}
+             */
+            if (min_last_change_left[sn] < lv) {
+                anchor = Math.min(anchor, lv);
+                stats.rule(Stats.Rule.TC, level);
+                continue; // TC: choose alternative transitive stack
+            }
+
+            /*
+             * Check Rule 10 (SC)
+             *
+             * if exists k > last_change_time[sn] such that pk = pn && sk > sn && last_change_type[sk] == MOVE_OUT
+             *
+             * max_group_src_right[s] = max{k | pk == p[s][h[s]] && sk > s && last_change_type[sk] == MOVE_OUT}
+             */
+            if (curr_state.last_change_time[sn] < max_group_src_right[sn]) {
+                anchor = Math.min(anchor, max_group_src_right[sn]);
+                stats.rule(Stats.Rule.SC, level);
+                continue; // SC: swap source stacks of two relocations
+            }
+
+            /*
+             * Prepare Rule 11 (SD)
+             *
+             * max_group_dst_right[d] = max{k | pk == pn && dk > d && last_change_type[dk] == MOVE_IN}
+             */
+            int max_group_dst_temp = 0;
+            for (int d = n_stacks - 1; d >= 0; d--) {
+                max_group_dst_right[d] = max_group_dst_temp;
+                if (curr_state.last_change_type[d] == Type.MOVE_IN) {
+                    int k = curr_state.last_change_time[d];
+                    int pk = path[k - 1].p;
+                    if (pk == pn) {
+                        max_group_dst_temp = Math.max(max_group_dst_temp, k);
+                    }
+                }
+            }
+
+            /*
+             * Enumerate destination stack
+             */
+            boolean first_empty = true;
+            for (int dn = 0; dn < n_stacks; dn++) {
+                /*
+                 * Check feasibility
+                 */
+                if (dn == sn || curr_state.h[dn] == n_tiers) {
+                    continue;
+                }
+
+                /*
+                 * Check Rule 7 (EA)
+                 */
+                if (curr_state.h[dn] == 0) {
+                    if (first_empty) {
+                        first_empty = false;
+                    } else {
+                        stats.rule(Stats.Rule.EA, level);
+                        continue; // EA: choose the leftmost empty stack
+                    }
+                }
+
+                /*
+                 * Check Rule 2 (TB)
+                 */
+                if (curr_state.last_change_time[dn] < lv) {
+                    anchor = Math.min(anchor, lv);
+                    stats.rule(Stats.Rule.TB, level);
+                    continue; // TB: merge two relocations and perform earlier
+                }
+
+                /*
+                 * Check Rule 4 (IB)
+                 *
+                 * if exists s' > s such that last_move_out_time[s'] > max{last_change_time[sn], last_change_time[dn]}
+                 *
+                 * max_last_move_out_right[s] = max{last_move_out_time[s'] | s' > s}
+                 */
+                if (Math.max(curr_state.last_change_time[sn], curr_state.last_change_time[dn]) < max_last_move_out_right[sn]) {
+                    anchor = Math.min(anchor, max_last_move_out_right[sn]);
+                    stats.rule(Stats.Rule.IB, level);
+                    continue; // IB: perform (pn, sn, dn) before (*, s', *)
+                }
+
+                if (curr_state.last_change_type[dn] == Type.MOVE_OUT) {
+                    int k = curr_state.last_change_time[dn];
+                    int pk = path[k - 1].p;
+                    int dk = path[k - 1].d;
+                    if (pk == pn) {
+                        /*
+                         * Check Rule 8 (SA)
+                         */
+                        if (curr_state.last_change_time[sn] < k) {
+                            anchor = Math.min(anchor, k);
+                            stats.rule(Stats.Rule.SA, level);
+                            continue; // SA: merge two relocations and perform earlier
+                        }
+
+                        /*
+                         * Check Rule 9 (SB)
+                         */
+                        if (curr_state.last_change_time[dk] == k) {
+                            anchor = Math.min(anchor, k);
+                            stats.rule(Stats.Rule.SB, level);
+                            continue; // SB: merge two relocations and perform later
+                        }
+                    }
+                }
+
+                /*
+                 * Check Rule 11 (SD)
+                 *
+                 * if exists k > last_change_time[dn] such that pk = pn && dk > dn && last_change_type[dk] == MOVE_IN
+                 *
+                 * max_group_dst_right[d] = max{k | pk == pn && dk > d && last_change_type[dk] == MOVE_IN}
+                 */
+                if (curr_state.last_change_time[dn] < max_group_dst_right[dn]) {
+                    anchor = Math.min(anchor, max_group_dst_right[dn]);
+                    stats.rule(Stats.Rule.SD, level);
+                    continue; // SD: swap destination stacks of two relocations
+                }
+
+                /*
+                 * Child node, obtained in place and undone before the next branch
+                 */
+                State child_state = curr_state;
+                int mark = child_state.mark();
+                child_state.apply_relocate(sn, dn, level + 1);
+
+                /*
+                 * Update path when generating branches
+                 */
+                path[level] = algo.move(pn, sn, dn);
+
+                /*
+                 * Retrieve
+                 */
+                boolean dominated = false;
+                while (child_state.is_retrievable()) {
+                    int s_min = child_state.s_min;
+                    int p = child_state.p[s_min * stride + child_state.h[s_min]];
+                    int l = child_state.l[s_min * stride + child_state.h[s_min]];
+
+                    if (l > 0) {
+                        int k = l;
+                        int sk = path[k - 1].s;
+
+                        /*
+                         * Check Rule 5 (RA)
+                         */
+                        if (child_state.last_move_out_time[sk] == k && child_state.last_move_in_time[sk] < k && hist_q[k - 1][sk] == p) {
+                            anchor = Math.min(anchor, k);
+                            stats.rule(Stats.Rule.RA, level);
+                            dominated = true; // RA: k-th relocation can be left out
+                            break; // no need to continue retrievals
+                        }
+
+                        for (int d = 0; d < s_min; d++) {
+                            /*
+                             * Check Rule 6 (RB)
+                             */
+                            if (hist_h[k - 1][d] < n_tiers && child_state.last_move_out_time[d] < k && child_state.last_move_in_time[d] < k && hist_q[k - 1][d] >= p) {
+                                anchor = Math.min(anchor, k);
+                                stats.rule(Stats.Rule.RB, level);
+                                dominated = true; // RB: choose alternative transitive stack
+                                break; // no need to test more
+                            }
+                        }
+                        if (dominated) {
+                            break; // no need to continue retrievals
+                        }
+                    }
+
+                    child_state.apply_retrieve(level + 1);
+                }
+
+                if (dominated) {
+                    child_state.undo(mark);
+                    continue; // dominated according to RA or RB
+                }
+
+                /*
+                 * Goal test
+                 */
+                if (child_state.n_blocks == 0) {
+                    boolean stop = algo.improve(level + 1, path, "goal");
+                    child_state.undo(mark);
+                    if (stop) {
+                        return -1;
+                    }
+                    continue;
+                }
+
+                /*
+                 * Child lower bound
+                 */
+                int child_lb = bound.eval(child_state);
+
+                /*
+                 * Lower bounding
+                 */
+                if (level + 1 + child_lb > limit) {
+                    bound.count_prune(limit - level - 1);
+                    stats.lb_prune(level);
+                    child_state.undo(mark);
+                    continue;
+                }
+
+                /*
+                 * Transposition table: the configuration may be known to need more relocations, which only prunes and
+                 * leaves the key alone, so that the order of the branches and a saved frontier do not depend on the
+                 * contents of the table
+                 */
+                if (algo.tt != null) {
+                    int tt_depth = algo.tt.probe(child_state.hash());
+                    if (tt_depth > 0) {
+                        n_tt_hits++;
+                        if (level + 1 + Math.max(child_lb, tt_depth + 1) > limit) {
+                            child_state.undo(mark);
+                            continue;
+                        }
+                    } else {
+                        n_tt_misses++;
+                    }
+                }
+
+                /*
+                 * Probing
+                 */
+                if (probe && level + 1 + child_lb == limit - 1) {
+                    if (algo.probe_pool != null) {
+                        algo.probe_async(child_state.copy(), Arrays.copyOf(path, path.length), level + 1); // counted when it finishes
+                    } else {
+                        n_probe++;
+                        int new_len_jzw = algo.probe(child_state, path, level + 1, 0);
+                        stats.probe_jzw(new_len_jzw);
+                        if (new_len_jzw != Integer.MAX_VALUE && algo.improve(new_len_jzw, path, "update")) {
+                            child_state.undo(mark);
+                            return -1;
+                        }
+
+                        int new_len_sm2 = algo.probe(child_state, path, level + 1, 1);
+                        stats.probe_sm2(new_len_sm2);
+                        if (new_len_sm2 != Integer.MAX_VALUE && algo.improve(new_len_sm2, path, "update")) {
+                            child_state.undo(mark);
+                            return -1;
+                        }
+                    }
+                }
+
+                /*
+                 * Non-dominated branches
+                 */
+                child_state.undo(mark);
+                keys[n_branches++] = (long) child_lb << 48 | (long) curr_q[dn] << 32 | (long) curr_q[sn] << 16 | sn * n_stacks + dn;
+            }
+        }
+
+        Arrays.sort(keys, 0, n_branches);
+        stats.branches(level, n_branches);
+        return n_branches;
+    }
+}
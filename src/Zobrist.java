@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.SplittableRandom;
+
+public class Zobrist {
+    private static final long SEED = 0x5eed_2023_0b10cL; // fixed seed for reproducible keys
+
+    public final int stride; // distance between two consecutive stacks in slot_keys, i.e., (n_tiers + 1) * n_prios
+    public final int n_prios; // number of priority values with a key, i.e., max_prio + 1
+    public final long[] slot_keys; // slot_keys[s * stride + t * n_prios + p]: key of priority p at slot (s, t)
+    public final long[] tier_keys; // tier_keys[t * n_prios + p]: key of priority p at tier t of any stack
+
+    /**
+     * Create random keys for bays of a given size
+     *
+     * @param n_stacks number of stacks
+     * @param n_tiers  number of tiers
+     * @param max_prio maximum priority
+     */
+    public Zobrist(int n_stacks, int n_tiers, int max_prio) {
+        SplittableRandom rnd = new SplittableRandom(SEED);
+        this.n_prios = max_prio + 1;
+        this.stride = (n_tiers + 1) * n_prios;
+        this.slot_keys = new long[n_stacks * stride];
+        for (int i = 0; i < slot_keys.length; i++) {
+            slot_keys[i] = rnd.nextLong();
+        }
+        this.tier_keys = new long[stride];
+        for (int i = 0; i < tier_keys.length; i++) {
+            tier_keys[i] = rnd.nextLong();
+        }
+    }
+
+    /**
+     * Mix the bits of a value (finalizer of SplitMix64)
+     *
+     * @param x value
+     * @return mixed value
+     */
+    public static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Hash the blocks of a stack regardless of its position in the bay
+     *
+     * @param state the state
+     * @param s     stack
+     * @return hash of stack s
+     */
+    public long stack_hash(State state, int s) {
+        long hs = 0;
+        for (int t = 1; t <= state.h[s]; t++) {
+            hs ^= tier_keys[t * n_prios + state.p[s * state.stride + t]];
+        }
+        return hs;
+    }
+
+    /**
+     * Hash the configuration of a bay, i.e., heights and priorities of all stacks
+     *
+     * @param state the state
+     * @return hash of the configuration
+     */
+    public long hash(State state) {
+        long hash = 0;
+        for (int s = 0; s < state.n_stacks; s++) {
+            for (int t = 1; t <= state.h[s]; t++) {
+                hash ^= slot_keys[s * stride + t * n_prios + state.p[s * state.stride + t]];
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hash the configuration of a bay regardless of the order of stacks
+     *
+     * @param state the state
+     * @return hash of the multiset of stacks
+     */
+    public long symmetric_hash(State state) {
+        long hash = 0;
+        for (int s = 0; s < state.n_stacks; s++) {
+            hash += mix(stack_hash(state, s));
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the solver entry points
+ */
+public class AlgorithmTest {
+    private static final long SEED = 20230106; // seed of the first bay, incremented for the others
+    private static final int N_BAYS = 20; // number of random bays per test
+    private static final long[] SEEDS = {20230115, 20230188, 20230206}; // seeds of 7x6 bays needing a search
+
+    static Config quiet() {
+        Config config = new Config();
+        config.verbose = false;
+        return config;
+    }
+
+    /**
+     * A cancel only stops the solve it was issued before or during, even one that returns early
+     */
+    @Test
+    public void cancel_is_cleared_by_trivial_solve() {
+        Algorithm algo = new Algorithm(quiet());
+        algo.cancel();
+        Report trivial = algo.solve(Instance.generate(3, 3, 1, SEED), 10);
+        assertEquals(0, trivial.best_ub);
+
+        Instance inst = Instance.generate(7, 6, 34, SEEDS[0]);
+        Report report = algo.solve(inst, 60);
+        assertEquals(report.best_lb, report.best_ub);
+        assertEquals(new Algorithm(quiet()).solve(inst, 60).best_ub, report.best_ub);
+    }
+
+    /**
+     * The best-first engine proves the same optimum as iterative deepening on bays needing a search
+     */
+    @Test
+    public void best_first_finds_optimum() {
+        Config config = quiet();
+        config.engine = Algorithm.Engine.ASTAR;
+        for (int bay = 0; bay < N_BAYS; bay++) {
+            Instance inst = Instance.generate(7, 5, 27, SEED + bay);
+            int optimum = new Algorithm(quiet()).solve(inst, 60).best_ub;
+            Report report = new Algorithm(config).solve(inst, 60);
+            assertEquals(optimum, report.best_ub, "bay " + bay);
+            assertEquals(report.best_lb, report.best_ub, "bay " + bay);
+            Validator.verify(inst, report.best_sol, report.best_ub);
+        }
+    }
+
+    /**
+     * When its memory cap is hit, deepening goes on from the open list of the best-first engine to the same optimum
+     */
+    @Test
+    public void best_first_over_memory_cap_finds_optimum() {
+        Instance inst = Instance.generate(7, 6, 34, SEEDS[0]); // opens more nodes than 1 MB holds
+        int optimum = new Algorithm(quiet()).solve(inst, 60).best_ub;
+        Config config = quiet();
+        config.engine = Algorithm.Engine.ASTAR;
+        config.astar_size_mb = 1;
+        StringBuilder statuses = new StringBuilder();
+        config.listener = (status, report) -> statuses.append(status).append(' ');
+        Report report = new Algorithm(config).solve(inst, 60);
+        assertTrue(statuses.toString().contains("memory"), statuses.toString());
+        assertEquals(optimum, report.best_ub);
+        assertEquals(report.best_lb, report.best_ub);
+        Validator.verify(inst, report.best_sol, report.best_ub);
+    }
+    /**
+     * The probe cache only skips probes whose results it holds, so it changes neither the optimum nor the search
+     */
+    @Test
+    public void probe_cache_keeps_optimum() {
+        for (long seed : SEEDS) {
+            Instance inst = Instance.generate(7, 6, 34, seed);
+            Config config = quiet();
+            config.probe_cache_mb = 0;
+            Report uncached = new Algorithm(config).solve(inst, 60);
+            config.probe_cache_mb = 16;
+            Report cached = new Algorithm(config).solve(inst, 60);
+            assertEquals(uncached.best_ub, cached.best_ub, "seed " + seed);
+            assertEquals(cached.best_lb, cached.best_ub, "seed " + seed);
+            assertEquals(uncached.n_nodes, cached.n_nodes, "seed " + seed);
+            assertTrue(cached.n_pc_hits > 0, "seed " + seed + " without cache hits");
+            Validator.verify(inst, cached.best_sol, cached.best_ub);
+        }
+    }
+    /**
+     * Probes run by helper threads may improve the upper bound later than in the searching thread, but not the optimum
+     */
+    @Test
+    public void async_probing_keeps_optimum() {
+        for (long seed : SEEDS) {
+            Instance inst = Instance.generate(7, 6, 34, seed);
+            int optimum = new Algorithm(quiet()).solve(inst, 60).best_ub;
+            for (int probe_cache_mb : new int[]{0, 16}) {
+                Config config = quiet();
+                config.deterministic = false;
+                config.probe_threads = 2;
+                config.probe_cache_mb = probe_cache_mb;
+                Report report = new Algorithm(config).solve(inst, 60);
+                String where = "seed " + seed + ", cache " + probe_cache_mb + " MB";
+                assertEquals(optimum, report.best_ub, where);
+                assertEquals(report.best_lb, report.best_ub, where);
+                Validator.verify(inst, report.best_sol, report.best_ub);
+            }
+        }
+    }
+    /**
+     * Carry out the first relocations of a solution on an instance, retrieving the blocks as soon as they are on top
+     *
+     * @param inst   instance, changed in place
+     * @param sol    solution of the instance
+     * @param n_done number of relocations carried out
+     */
+    static void carry_out(Instance inst, Move[] sol, int n_done) {
+        for (int k = 0; ; k++) {
+            boolean retrieved = true;
+            while (retrieved && inst.n_blocks > 0) {
+                retrieved = false;
+                int min_prio = Integer.MAX_VALUE;
+                for (int s = 0; s < inst.n_stacks; s++) {
+                    for (int t = 1; t <= inst.h[s]; t++) {
+                        min_prio = Math.min(min_prio, inst.p[s][t]);
+                    }
+                }
+                for (int s = 0; s < inst.n_stacks && !retrieved; s++) {
+                    if (inst.h[s] > 0 && inst.p[s][inst.h[s]] == min_prio) {
+                        inst.p[s][inst.h[s]--] = 0;
+                        inst.n_blocks--;
+                        retrieved = true;
+                    }
+                }
+            }
+            if (k == n_done) {
+                return;
+            }
+            Move move = sol[k];
+            assertEquals(move.p, inst.p[move.s][inst.h[move.s]]);
+            inst.p[move.d][++inst.h[move.d]] = inst.p[move.s][inst.h[move.s]];
+            inst.p[move.s][inst.h[move.s]--] = 0;
+        }
+    }
+
+    /**
+     * A bay reached by carrying out part of the previous solution is solved by the rest of it, with the previous lower
+     * bound, and a changed bay by the previous solution repaired for it, both resolved to their optimum
+     */
+    @Test
+    public void resolve_finds_optimum() {
+        for (int bay = 0; bay < N_BAYS; bay++) {
+            Instance prev_inst = Instance.generate(7, 5, 27, SEED + bay);
+            Report prev = new Algorithm(quiet()).solve(prev_inst, 60);
+            String where = "bay " + bay;
+
+            /*
+             * The crane carried out half of the relocations
+             */
+            Instance inst = Instance.generate(7, 5, 27, SEED + bay);
+            int n_done = prev.best_ub / 2;
+            carry_out(inst, prev.best_sol, n_done);
+            if (inst.n_blocks > 0) {
+                Checkpoint seed = Algorithm.warm_start(prev_inst, prev, inst);
+                assertEquals(prev.best_ub - n_done, seed.best_ub, where);
+                assertEquals(prev.best_lb - n_done, seed.best_lb, where);
+                Report report = new Algorithm(quiet()).resolve(prev_inst, prev, inst, 60);
+                assertEquals(prev.best_ub - n_done, report.best_ub, where);
+                assertEquals(report.best_lb, report.best_ub, where);
+                Validator.verify(inst, report.best_sol, report.best_ub);
+            }
+
+            /*
+             * Two blocks at the bottom of the bay swapped their priorities
+             */
+            inst = Instance.generate(7, 5, 27, SEED + bay);
+            int a = 0;
+            while (inst.h[a] == 0) {
+                a++;
+            }
+            int b = a + 1;
+            while (inst.h[b] == 0) {
+                b++;
+            }
+            int prio = inst.p[a][1];
+            inst.p[a][1] = inst.p[b][1];
+            inst.p[b][1] = prio;
+            Checkpoint seed = Algorithm.warm_start(prev_inst, prev, inst);
+            Report fresh = new Algorithm(quiet()).solve(inst, 60);
+            assertNotNull(seed, where);
+            Validator.verify(inst, seed.best_sol, seed.best_ub);
+            assertTrue(seed.best_ub >= fresh.best_ub, where);
+            Report report = new Algorithm(quiet()).resolve(prev_inst, prev, inst, 60);
+            assertEquals(fresh.best_ub, report.best_ub, where);
+            assertEquals(report.best_lb, report.best_ub, where);
+            Validator.verify(inst, report.best_sol, report.best_ub);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Round trips of bays through BayFile
+ */
+public class BayFileTest {
+
+    @Test
+    public void bays_survive_round_trips(@TempDir File dir) throws IOException {
+        List<String> names = Arrays.asList("bay 0", "", "bäy 港");
+        List<Instance> insts = Arrays.asList(Instance.generate(6, 5, 20, 20230106), Instance.generate(3, 3, 1, 20230107), Instance.generate(7, 6, 34, 5, 20230108));
+        String path = new File(dir, "bays").getPath();
+        BayFile.write(path, names, insts);
+
+        BayFile file = BayFile.open(path);
+        assertEquals(names.size(), file.size());
+        for (int i = 0; i < names.size(); i++) {
+            assertEquals(names.get(i), file.name(i));
+            Instance expected = insts.get(i);
+            Instance inst = file.get(i);
+            assertEquals(expected.n_stacks, inst.n_stacks, "bay " + i);
+            assertEquals(expected.n_tiers, inst.n_tiers, "bay " + i);
+            assertEquals(expected.n_blocks, inst.n_blocks, "bay " + i);
+            assertEquals(expected.max_prio, inst.max_prio, "bay " + i);
+            assertArrayEquals(expected.h, inst.h, "bay " + i);
+            for (int s = 0; s < inst.n_stacks; s++) {
+                assertArrayEquals(expected.p[s], inst.p[s], "bay " + i + ", stack " + s);
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> file.get(names.size()));
+    }
+
+    @Test
+    public void names_are_limited_to_a_char_length(@TempDir File dir) {
+        char[] long_name = new char[Character.MAX_VALUE + 1];
+        Arrays.fill(long_name, 'x');
+        File file = new File(dir, "bays");
+        assertThrows(IllegalArgumentException.class, () -> BayFile.write(file.getPath(), Collections.singletonList(new String(long_name)), Collections.singletonList(Instance.generate(3, 3, 1, 20230106))));
+        assertFalse(file.exists());
+    }
+}
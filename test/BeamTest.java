@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Tests of the bounded selection of the children of a beam level
+ */
+public class BeamTest {
+    private static final long SEED = 20230105; // seed of the offered keys
+    private static final int N_RUNS = 200; // number of selections
+
+    /**
+     * The selection keeps the smallest keys with distinct hashes, the smallest key of each hash, as sorting all the
+     * keys and skipping the repeated hashes does
+     */
+    @Test
+    public void candidates_keep_smallest_distinct_keys() {
+        Random rnd = new Random(SEED);
+        for (int run = 0; run < N_RUNS; run++) {
+            int capacity = rnd.nextInt(40);
+            int n_keys = rnd.nextInt(400);
+            int n_hashes = 1 + rnd.nextInt(100);
+
+            Beam.Candidates out = new Beam.Candidates(capacity);
+            HashMap<Long, Long> best = new HashMap<>(); // best.get(hash): smallest key offered with the hash
+            for (int i = 0; i < n_keys; i++) {
+                long key = (long) rnd.nextInt(1000) << 16 | i; // distinct keys, as the node and move are
+                long hash = rnd.nextInt(n_hashes) - n_hashes / 2; // including 0 and negative hashes
+                out.offer(key, hash);
+                best.merge(hash, key, Math::min);
+            }
+
+            long[] expected = best.values().stream().mapToLong(Long::longValue).sorted().limit(capacity).toArray();
+            long[] actual = Arrays.copyOf(out.keys, out.size);
+            Arrays.sort(actual);
+            assertArrayEquals(expected, actual, "run " + run);
+        }
+    }
+}
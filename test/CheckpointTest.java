@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of searches resumed from checkpoints while a transposition table is used
+ */
+public class CheckpointTest {
+    private static final long[] SEEDS = {20230115, 20230188, 20230206}; // seeds of 7x6 bays with transpositions
+    private static final int N_RESUMES = 4; // number of checkpoints resumed per bay
+
+    /**
+     * Solver keeping every checkpoint it saves
+     */
+    static class Recorder extends Algorithm {
+        final ArrayList<Checkpoint> checkpoints = new ArrayList<>();
+
+        Recorder(Config config) {
+            super(config);
+            keep_checkpoint = true;
+        }
+
+        @Override
+        synchronized void checkpoint(long[] frontier) {
+            super.checkpoint(frontier);
+            checkpoints.add(last_checkpoint);
+        }
+    }
+
+    /**
+     * Check that the frontier of a checkpoint keys its branches by the lower bounds of their children alone, which a
+     * resumed search computes again whatever the contents of its transposition table
+     *
+     * @param inst   instance of the checkpoint
+     * @param config configuration of the search
+     * @param cp     checkpoint
+     */
+    static void check_frontier(Instance inst, Config config, Checkpoint cp) {
+        LowerBound bound = LowerBound.create(config.lower_bound);
+        State state = State.initialize(inst);
+        while (state.is_retrievable()) {
+            state.retrieve(0);
+        }
+        for (int k = 0; k < cp.frontier.length; k++) {
+            int src = (int) (cp.frontier[k] & 0xffff) / inst.n_stacks;
+            int dst = (int) (cp.frontier[k] & 0xffff) % inst.n_stacks;
+            state.relocate(src, dst, k + 1);
+            while (state.is_retrievable()) {
+                state.retrieve(k + 1);
+            }
+            assertEquals(bound.eval(state), (int) (cp.frontier[k] >>> 48), "level " + k);
+        }
+    }
+
+    /**
+     * The transposition table is empty after a resume, so the branches skipped by a resume must not depend on it
+     */
+    @Test
+    public void resume_with_transposition_table_stays_optimal() {
+        for (long seed : SEEDS) {
+            Instance inst = Instance.generate(7, 6, 34, seed);
+
+            Config config = new Config();
+            config.verbose = false;
+            config.tt_size_mb = 4;
+            config.checkpoint_interval_ms = 0;
+            config.check_interval_ms = 1;
+            Recorder recorder = new Recorder(config);
+            Report fresh = recorder.solve(inst, 60);
+            assertEquals(fresh.best_lb, fresh.best_ub, "seed " + seed + " not solved");
+            assertTrue(fresh.n_tt_hits > 0, "seed " + seed + " without transpositions");
+
+            int n = recorder.checkpoints.size();
+            for (Checkpoint cp : recorder.checkpoints) {
+                check_frontier(inst, config, cp);
+            }
+            for (int i = 0; i < N_RESUMES && i < n; i++) {
+                Checkpoint cp = recorder.checkpoints.get(n - 1 - i * n / N_RESUMES);
+                Report resumed = new Algorithm(config).resume(inst, cp, 60);
+                assertEquals(fresh.best_ub, resumed.best_ub, "seed " + seed + ", checkpoint " + i);
+                assertEquals(resumed.best_lb, resumed.best_ub, "seed " + seed + ", checkpoint " + i);
+                Validator.verify(inst, resumed.best_sol, resumed.best_ub);
+            }
+        }
+    }
+
+    /**
+     * The engines keep no frontier, so a time limit hit by them saves a checkpoint resumed by deepening
+     */
+    @Test
+    public void engines_save_checkpoint_at_time_limit() {
+        Instance inst = Instance.generate(7, 6, 34, SEEDS[2]);
+        for (Algorithm.Engine engine : new Algorithm.Engine[]{Algorithm.Engine.ASTAR, Algorithm.Engine.BEAM}) {
+            Config config = new Config();
+            config.verbose = false;
+            config.engine = engine;
+            Algorithm algo = new Algorithm(config);
+            algo.keep_checkpoint = true;
+            Report stopped = algo.solve(inst, 0.01);
+            if (stopped.best_lb == stopped.best_ub) {
+                continue; // solved before the time limit
+            }
+            assertNotNull(algo.last_checkpoint, engine.name());
+            assertEquals(0, algo.last_checkpoint.frontier.length, engine.name());
+            Report resumed = new Algorithm(config).resume(inst, algo.last_checkpoint, 60);
+            assertEquals(resumed.best_lb, resumed.best_ub, engine.name());
+        }
+    }
+
+    /**
+     * A checkpoint file that cannot be written is reported, and the search goes on
+     */
+    @Test
+    public void checkpoint_error_is_reported(@TempDir File dir) {
+        Instance inst = Instance.generate(7, 6, 34, SEEDS[0]);
+        Config config = new Config();
+        config.verbose = false;
+        config.checkpoint_interval_ms = 0;
+        config.checkpoint_file = new File(new File(dir, "missing"), "checkpoint").getPath();
+        Report report = new Algorithm(config).solve(inst, 60);
+        assertNotNull(report.checkpoint_error);
+        assertEquals(report.best_lb, report.best_ub);
+
+        config.checkpoint_file = new File(dir, "checkpoint").getPath();
+        assertNull(new Algorithm(config).solve(inst, 60).checkpoint_error);
+    }
+}
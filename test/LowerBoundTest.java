@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Differential test of LB-TS, evaluated by incremental peeling on the slot arrays maintained in place by State,
+ * against a recomputation from scratch of the configuration
+ */
+public class LowerBoundTest {
+    private static final long SEED = 20230101; // seed of the random walks
+    private static final int N_BAYS = 40; // number of random bays
+    private static final int N_STEPS = 2000; // number of relocations, retrievals and undos per bay
+
+    /**
+     * Compute LB-TS from the heights and priorities only, rebuilding qualities and badness and recomputing both
+     * thresholds after every peeled block
+     *
+     * @param state the state
+     * @return LB-TS
+     */
+    static int lb_ts_from_scratch(State state) {
+        int n_stacks = state.n_stacks;
+        int n_tiers = state.n_tiers;
+
+        int[][] p = new int[n_stacks][n_tiers + 1];
+        int[][] q = new int[n_stacks][n_tiers + 1];
+        int[][] b = new int[n_stacks][n_tiers + 1];
+        int[] h = state.h.clone();
+        int n_bad = 0;
+        for (int s = 0; s < n_stacks; s++) {
+            p[s][0] = q[s][0] = Integer.MAX_VALUE;
+            for (int t = 1; t <= h[s]; t++) {
+                p[s][t] = state.p[s * state.stride + t];
+                if (p[s][t] <= q[s][t - 1]) {
+                    q[s][t] = p[s][t];
+                } else {
+                    q[s][t] = q[s][t - 1];
+                    b[s][t] = b[s][t - 1] + 1;
+                    n_bad++;
+                }
+            }
+        }
+
+        int k = 0;
+        int lowest = Integer.MAX_VALUE;
+        for (int s = 0; s < n_stacks; s++) {
+            lowest = Math.min(lowest, h[s]);
+        }
+        while (lowest > 0) {
+            int q_min = Integer.MAX_VALUE;
+            int q_max = 0;
+            for (int s = 0; s < n_stacks; s++) {
+                q_min = Math.min(q_min, q[s][h[s]]);
+                if (h[s] < n_tiers) {
+                    q_max = Math.max(q_max, q[s][h[s]]);
+                }
+            }
+
+            boolean satisfied = true;
+            for (int s = 0; s < n_stacks; s++) {
+                if (p[s][h[s]] == q_min || (b[s][h[s]] > 0 && p[s][h[s]] <= q_max)) {
+                    lowest = Math.min(lowest, --h[s]);
+                    satisfied = false;
+                    break;
+                }
+            }
+
+            if (satisfied) {
+                k++;
+                for (int s = 0; s < n_stacks; s++) {
+                    lowest = Math.min(lowest, --h[s]);
+                }
+            }
+        }
+
+        return n_bad + k;
+    }
+
+    @Test
+    public void lb_ts_matches_recomputation_along_random_walks() {
+        Random rnd = new Random(SEED);
+        for (int bay = 0; bay < N_BAYS; bay++) {
+            int n_stacks = 2 + rnd.nextInt(7);
+            int n_tiers = 2 + rnd.nextInt(6);
+            int n_blocks = 1 + rnd.nextInt(n_stacks * n_tiers - n_tiers + 1);
+            int n_prios = bay % 2 == 0 ? n_blocks : 1 + rnd.nextInt(n_blocks); // every other bay has duplicates
+            Instance inst = Instance.generate(n_stacks, n_tiers, n_blocks, n_prios, rnd.nextLong());
+
+            State state = State.initialize(inst);
+            String name = "bay " + bay;
+            RandomWalk.walk(rnd, state, N_STEPS, where -> assertEquals(lb_ts_from_scratch(state), LowerBound.lb_ts(state), name + ", " + where));
+        }
+    }
+}
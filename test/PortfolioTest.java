@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the reports of a portfolio
+ */
+public class PortfolioTest {
+    private static final long SEED = 20230104; // seed of the first bay, incremented for the others
+    private static final int N_BAYS = 40; // number of random bays, more than get a slice before the deadline
+
+    /**
+     * A bay without a slice still gets a report, with its lower bound but no solution, so that only a bay without
+     * solution gets null
+     */
+    @Test
+    public void every_feasible_bay_gets_a_report() throws InterruptedException {
+        List<Instance> insts = new ArrayList<>();
+        for (int i = 0; i < N_BAYS; i++) {
+            insts.add(Instance.generate(7, 6, 34, SEED + i));
+        }
+        Config config = new Config();
+        config.verbose = false;
+        Report[] reports = Portfolio.solve(insts, 0.1, 1, config);
+        int n_unsolved = 0;
+        for (int i = 0; i < N_BAYS; i++) {
+            Report report = reports[i];
+            assertNotNull(report, "bay " + i);
+            assertTrue(report.best_lb <= report.best_ub, "bay " + i);
+            if (report.best_sol == null) {
+                assertEquals(Integer.MAX_VALUE, report.best_ub, "bay " + i);
+                assertTrue(report.best_lb > 0, "bay " + i);
+                n_unsolved++;
+            } else {
+                Validator.verify(insts.get(i), report.best_sol, report.best_ub);
+            }
+        }
+        assertTrue(n_unsolved > 0);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Random walk of in-place relocations, retrievals and undos to earlier marks, for the differential tests of what
+ * State maintains incrementally
+ */
+public class RandomWalk {
+
+    /**
+     * Walk from a state, checking it after every change
+     *
+     * @param rnd     random numbers
+     * @param state   the state, changed in place
+     * @param n_steps largest number of changes, fewer if every block is retrieved
+     * @param check   receives the step and the change just made, e.g., "step 3: retrieve", for assertion messages
+     */
+    static void walk(Random rnd, State state, int n_steps, Consumer<String> check) {
+        int n_stacks = state.n_stacks;
+        int n_tiers = state.n_tiers;
+        ArrayList<Integer> marks = new ArrayList<>(); // marks[i]: trail position before the i-th applied change
+        for (int step = 1; step <= n_steps; step++) {
+            ArrayList<Integer> legal = new ArrayList<>();
+            for (int s = 0; s < n_stacks; s++) {
+                for (int d = 0; d < n_stacks; d++) {
+                    if (s != d && state.h[s] > 0 && state.h[d] < n_tiers) {
+                        legal.add(s * n_stacks + d);
+                    }
+                }
+            }
+
+            String op;
+            if (!marks.isEmpty() && (rnd.nextInt(4) == 0 || legal.isEmpty() && !state.is_retrievable())) {
+                int i = rnd.nextInt(marks.size());
+                op = "undo to " + i;
+                state.undo(marks.get(i));
+                marks.subList(i, marks.size()).clear();
+            } else if (state.is_retrievable() && (legal.isEmpty() || rnd.nextBoolean())) {
+                op = "retrieve";
+                marks.add(state.mark());
+                state.apply_retrieve(step);
+            } else if (!legal.isEmpty()) {
+                int move = legal.get(rnd.nextInt(legal.size()));
+                op = "relocate " + move / n_stacks + " to " + move % n_stacks;
+                marks.add(state.mark());
+                state.apply_relocate(move / n_stacks, move % n_stacks, step);
+            } else {
+                break; // every block is retrieved
+            }
+
+            check.accept("step " + step + ": " + op);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips of records through SolutionWriter and SolutionReader
+ */
+public class SolutionWriterTest {
+
+    private static Report report(int best_ub, Move[] best_sol) {
+        return new Report(best_ub - 1, best_ub + 2, best_ub, best_ub, best_sol, 0.5, 1.25, 2.0, 1234567890123L, 42, 3, 4, 5, 6, null, null);
+    }
+
+    private static byte[] write(SolutionWriter.Format format, String[] names, String[] statuses, Report[] reports) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SolutionWriter writer = new SolutionWriter(Channels.newChannel(out), format)) {
+            for (int i = 0; i < names.length; i++) {
+                writer.write(names[i], statuses[i], reports[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void records_survive_round_trips() throws IOException {
+        char[] long_name = new char[70000];
+        Arrays.fill(long_name, 'x');
+        Move[] sol = {new Move(3, 0, 1), new Move(7, 2, 0)};
+        String[] names = {"solved \"bay\"\n", "trivial", "infeasible", "error", new String(long_name)};
+        String[] statuses = {"solved", "solved", "infeasible", "java.io.IOException: no such file", "timeout"};
+        Report[] reports = {report(2, sol), new Report(0, 0, 0, 0, null, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, null), null, null, report(2, sol)};
+
+        for (SolutionWriter.Format format : SolutionWriter.Format.values()) {
+            int n = format == SolutionWriter.Format.BINARY ? names.length - 1 : names.length; // the long name is for JSONL only
+            byte[] bytes = write(format, Arrays.copyOf(names, n), statuses, reports);
+            try (SolutionReader reader = new SolutionReader(Channels.newChannel(new ByteArrayInputStream(bytes)), format)) {
+                for (int i = 0; i < n; i++) {
+                    assertTrue(reader.next(), format + " record " + i);
+                    assertEquals(names[i], reader.name);
+                    assertEquals(statuses[i], reader.status);
+                    Report expected = reports[i];
+                    if (expected == null) {
+                        assertNull(reader.report.best_sol, "no solution");
+                        continue;
+                    }
+                    assertEquals(expected.best_lb, reader.report.best_lb);
+                    assertEquals(expected.best_ub, reader.report.best_ub);
+                    assertEquals(expected.n_nodes, reader.report.n_nodes);
+                    assertEquals(expected.time_to_best_ub, reader.report.time_to_best_ub);
+                    Move[] moves = reader.report.best_sol;
+                    assertEquals(expected.best_ub, moves.length);
+                    for (int k = 0; k < moves.length; k++) {
+                        assertArrayEquals(new int[]{expected.best_sol[k].p, expected.best_sol[k].s, expected.best_sol[k].d}, new int[]{moves[k].p, moves[k].s, moves[k].d});
+                    }
+                }
+                assertFalse(reader.next());
+            }
+        }
+    }
+
+    @Test
+    public void binary_names_are_limited_to_a_char_length() throws IOException {
+        char[] long_name = new char[Character.MAX_VALUE + 1];
+        Arrays.fill(long_name, 'x');
+        try (SolutionWriter writer = new SolutionWriter(Channels.newChannel(new ByteArrayOutputStream()), SolutionWriter.Format.BINARY)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(new String(long_name), "solved", null));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the target stack maintained by State and of its compact encoding
+ */
+public class StateTest {
+    private static final long SEED = 20230102; // seed of the random walks
+    private static final int N_BAYS = 40; // number of random bays
+    private static final int N_STEPS = 2000; // number of relocations, retrievals and undos per bay
+
+    /**
+     * Find the target stack from the heights and priorities only: the smallest quality, ties broken by less topmost
+     * blockage and then by the leftmost stack
+     *
+     * @param state the state
+     * @return target stack, or -1 if there is no block
+     */
+    static int target_from_scratch(State state) {
+        if (state.n_blocks == 0) {
+            return -1;
+        }
+        int best = -1;
+        long best_key = Long.MAX_VALUE;
+        for (int s = 0; s < state.n_stacks; s++) {
+            int q = Integer.MAX_VALUE;
+            int b = 0;
+            for (int t = 1; t <= state.h[s]; t++) {
+                int p = state.p[s * state.stride + t];
+                if (p <= q) {
+                    q = p;
+                    b = 0;
+                } else {
+                    b++;
+                }
+            }
+            long key = (long) q << 32 | b;
+            if (key < best_key) {
+                best = s;
+                best_key = key;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * With duplicate priorities, relocating blocks off a stack whose bottom block has the smallest priority can make
+     * it a better target than the current one, and eventually retrievable
+     */
+    @Test
+    public void relocation_changes_target_with_duplicate_priorities(@TempDir File dir) throws IOException {
+        File file = new File(dir, "bay.txt");
+        try (PrintStream ps = new PrintStream(file)) {
+            ps.println("3 3 6");
+            ps.println("3 1 3 4");
+            ps.println("3 1 3 4");
+            ps.println("0");
+        }
+        State state = State.initialize(Instance.read_instance(file.getPath()));
+        assertEquals(0, state.s_min);
+
+        state.relocate(1, 2, 1);
+        assertEquals(1, state.s_min);
+        state.relocate(1, 2, 2);
+        assertEquals(1, state.s_min);
+        assertTrue(state.is_retrievable());
+        assertThrows(IllegalStateException.class, state::hash);
+    }
+
+    @Test
+    public void target_matches_full_scan_along_random_walks() {
+        Random rnd = new Random(SEED);
+        for (int bay = 0; bay < N_BAYS; bay++) {
+            int n_stacks = 2 + rnd.nextInt(7);
+            int n_tiers = 2 + rnd.nextInt(6);
+            int n_blocks = 1 + rnd.nextInt(n_stacks * n_tiers - n_tiers + 1);
+            int n_prios = 1 + rnd.nextInt(Math.max(1, n_blocks / 2)); // many duplicates
+            Instance inst = Instance.generate(n_stacks, n_tiers, n_blocks, n_prios, rnd.nextLong());
+
+            State state = State.initialize(inst);
+            String name = "bay " + bay;
+            RandomWalk.walk(rnd, state, N_STEPS, where -> assertEquals(target_from_scratch(state), state.s_min, name + ", " + where));
+        }
+    }
+
+    @Test
+    public void codec_restores_states_along_random_walks() {
+        Random rnd = new Random(SEED);
+        for (int bay = 0; bay < N_BAYS; bay++) {
+            int n_stacks = 2 + rnd.nextInt(7);
+            int n_tiers = 2 + rnd.nextInt(6);
+            int n_blocks = 1 + rnd.nextInt(n_stacks * n_tiers - n_tiers + 1);
+            int n_prios = 1 + rnd.nextInt(n_blocks);
+            Instance inst = Instance.generate(n_stacks, n_tiers, n_blocks, n_prios, rnd.nextLong());
+
+            Zobrist zobrist = new Zobrist(n_stacks, n_tiers, inst.max_prio);
+            State state = State.initialize(inst, zobrist);
+            State target = State.initialize(inst, zobrist);
+            State.Codec codec = new State.Codec(n_stacks, n_tiers, inst.n_blocks, inst.max_prio, N_STEPS);
+            long[] packed = new long[2 * codec.n_longs];
+            for (int step = 1; step <= N_STEPS && state.n_blocks > 0; step++) {
+                if (state.is_retrievable()) {
+                    state.retrieve(step);
+                } else {
+                    int s;
+                    int d;
+                    do {
+                        s = rnd.nextInt(n_stacks);
+                        d = rnd.nextInt(n_stacks);
+                    } while (s == d || state.h[s] == 0 || state.h[d] == n_tiers);
+                    state.relocate(s, d, step);
+                }
+
+                codec.pack(state, packed, codec.n_longs);
+                codec.unpack(packed, codec.n_longs, target);
+                String where = "bay " + bay + ", step " + step;
+                assertArrayEquals(state.h, target.h, where);
+                for (int s = 0; s < n_stacks; s++) {
+                    for (int t = 0; t <= state.h[s]; t++) {
+                        int i = s * state.stride + t;
+                        assertEquals(state.p[i], target.p[i], where);
+                        assertEquals(state.q[i], target.q[i], where);
+                        assertEquals(state.b[i], target.b[i], where);
+                        assertEquals(state.l[i], target.l[i], where);
+                    }
+                }
+                assertArrayEquals(state.last_change_time, target.last_change_time, where);
+                assertArrayEquals(state.last_change_type, target.last_change_type, where);
+                assertArrayEquals(state.last_move_out_time, target.last_move_out_time, where);
+                assertArrayEquals(state.last_move_in_time, target.last_move_in_time, where);
+                assertEquals(state.n_blocks, target.n_blocks, where);
+                assertEquals(state.n_bad, target.n_bad, where);
+                assertEquals(state.s_min, target.s_min, where);
+                assertEquals(state.hash(), target.hash(), where);
+            }
+        }
+    }
+}
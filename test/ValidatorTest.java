@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the solutions rejected by Validator
+ */
+public class ValidatorTest {
+
+    /**
+     * Check that a solution is rejected with a message mentioning a given text
+     */
+    private static void assert_rejected(Instance inst, Move[] moves, int len, String text) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Validator.verify(inst, moves, len));
+        assertTrue(e.getMessage().contains(text), e.getMessage());
+    }
+
+    @Test
+    public void invalid_solutions_are_rejected() {
+        Instance inst = Instance.generate(6, 5, 20, 20230106);
+        Config config = new Config();
+        config.verbose = false;
+        Report report = new Algorithm(config).solve(inst, 60);
+        Move[] sol = report.best_sol;
+        int len = report.best_ub;
+        assertTrue(len > 0);
+        assertEquals(len, Validator.verify(inst, sol, len));
+
+        Move first = sol[0];
+        Move[] moves = sol.clone();
+        moves[0] = new Move(first.p, first.s, first.s);
+        assert_rejected(inst, moves, len, "invalid stacks");
+        moves[0] = new Move(first.p, first.s, inst.n_stacks);
+        assert_rejected(inst, moves, len, "invalid stacks");
+        moves[0] = null;
+        assert_rejected(inst, moves, len, "invalid stacks");
+
+        moves[0] = new Move(first.p + 1, first.s, first.d);
+        assert_rejected(inst, moves, len, "top of stack " + first.s);
+
+        assert_rejected(inst, sol, len - 1, "blocks left after " + (len - 1) + " moves");
+
+        assert_rejected(inst, Arrays.copyOf(sol, len - 1), len, (len - 1) + " moves for a solution of length " + len);
+        assert_rejected(inst, null, len, "0 moves for a solution of length " + len);
+    }
+}
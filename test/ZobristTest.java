@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2023 Bo Jin <jinbostar@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Differential test of the hashes updated in place by State against the hashes computed from scratch by Zobrist
+ */
+public class ZobristTest {
+    private static final long SEED = 20230107; // seed of the random walks
+    private static final int N_BAYS = 40; // number of random bays
+    private static final int N_STEPS = 2000; // number of relocations, retrievals and undos per bay
+
+    @Test
+    public void hashes_match_recomputation_along_random_walks() {
+        Random rnd = new Random(SEED);
+        for (int bay = 0; bay < N_BAYS; bay++) {
+            int n_stacks = 2 + rnd.nextInt(7);
+            int n_tiers = 2 + rnd.nextInt(6);
+            int n_blocks = 1 + rnd.nextInt(n_stacks * n_tiers - n_tiers + 1);
+            int n_prios = bay % 2 == 0 ? n_blocks : 1 + rnd.nextInt(n_blocks); // every other bay has duplicates
+            Instance inst = Instance.generate(n_stacks, n_tiers, n_blocks, n_prios, rnd.nextLong());
+
+            Zobrist zobrist = new Zobrist(n_stacks, n_tiers, inst.max_prio);
+            State state = State.initialize(inst, zobrist);
+            String name = "bay " + bay;
+            assertEquals(zobrist.hash(state), state.hash(), name);
+            assertEquals(zobrist.symmetric_hash(state), state.symmetric_hash(), name);
+            RandomWalk.walk(rnd, state, N_STEPS, where -> {
+                assertEquals(zobrist.hash(state), state.hash(), name + ", " + where);
+                assertEquals(zobrist.symmetric_hash(state), state.symmetric_hash(), name + ", " + where);
+            });
+        }
+    }
+}